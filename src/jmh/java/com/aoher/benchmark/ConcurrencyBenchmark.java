@@ -0,0 +1,103 @@
+package com.aoher.benchmark;
+
+import com.aoher.App;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires {@code connections} concurrent saves at once and waits for all of them, once with the Tomcat
+ * worker pool and once with virtual threads. The durable store stands in for slow storage, where
+ * requests spend most of their time waiting for a group commit. The {@code virtual} rows need JDK 21;
+ * on older JDKs run with {@code -p threads=platform}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ConcurrencyBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"10000"})
+    public int connections;
+
+    @Param({"false", "true"})
+    public boolean durable;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient client;
+
+    private HttpRequest[] requests;
+
+    private Path directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("concurrency-benchmark");
+        context = new SpringApplicationBuilder(App.class).run(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--server.tomcat.max-connections=" + (connections + 1000),
+                "--server.tomcat.accept-count=" + connections,
+                "--address.virtual-threads=" + "virtual".equals(threads),
+                "--address.store.durable=" + durable,
+                "--address.store.directory=" + directory);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        requests = new HttpRequest[connections];
+        for (int i = 0; i < connections; i++) {
+            requests[i] = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/apiurl/V2/address/c" + i))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString("zip=" + (10000 + i % 90000) + "&town=Town" + i))
+                    .build();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Benchmark
+    public int burst() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[connections];
+        for (int i = 0; i < connections; i++) {
+            responses[i] = client.sendAsync(requests[i], HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 202) {
+                            throw new IllegalStateException("save returned " + response.statusCode());
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+        return connections;
+    }
+}
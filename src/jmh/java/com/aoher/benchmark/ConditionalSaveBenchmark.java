@@ -0,0 +1,100 @@
+package com.aoher.benchmark;
+
+import com.aoher.App;
+import com.aoher.exception.PreconditionFailedException;
+import com.aoher.model.Address;
+import com.aoher.service.AddressService;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-modify-write throughput of the service, blind or guarded by the revision that was read, over
+ * {@code keys} keys: one key is a worst case where every conditional save races all others. Run with
+ * {@code -t 1,2,4,8} to see how throughput changes with threads; the {@code conflicts} counter shows
+ * how many conditional saves failed their precondition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConditionalSaveBenchmark {
+
+    @Param({"1", "1024"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean conditional;
+
+    private ConfigurableApplicationContext context;
+
+    private AddressService service;
+
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN");
+        service = context.getBean(AddressService.class);
+        ids = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            ids[i] = "cas" + i;
+            service.save(ids[i], new Address("10000", "Town"));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void readModifyWrite(final Writer writer) {
+        String id = ids[writer.random.nextInt(ids.length)];
+        Address current = service.load(id);
+        Address next = new Address(current.getZip(), current.getTown());
+        if (!conditional) {
+            service.save(id, next);
+            writer.applied++;
+            return;
+        }
+        try {
+            service.save(id, next, revision -> revision == current.getRevision());
+            writer.applied++;
+        } catch (PreconditionFailedException e) {
+            writer.conflicts++;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Writer {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        public long applied;
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            applied = 0;
+            conflicts = 0;
+        }
+    }
+}
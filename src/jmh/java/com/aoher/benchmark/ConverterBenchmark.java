@@ -0,0 +1,54 @@
+package com.aoher.benchmark;
+
+import com.aoher.converter.AddressParamConverter;
+import com.aoher.model.Address;
+import com.aoher.version.AddressParamV1;
+import com.aoher.version.AddressParamV2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConverterBenchmark {
+
+    private Address address;
+
+    private AddressParamV1 addressParamV1;
+
+    private AddressParamV2 addressParamV2;
+
+    @Setup
+    public void setUp() {
+        address = new Address("12043", "Berlin");
+        addressParamV1 = AddressParamConverter.convertToV1(address);
+        addressParamV2 = AddressParamConverter.convertToV2(address);
+    }
+
+    @Benchmark
+    public Address convertFromV1() {
+        return AddressParamConverter.convertFromV1(addressParamV1);
+    }
+
+    @Benchmark
+    public Address convertFromV2() {
+        return AddressParamConverter.convertFromV2(addressParamV2);
+    }
+
+    @Benchmark
+    public AddressParamV1 convertToV1() {
+        return AddressParamConverter.convertToV1(address);
+    }
+
+    @Benchmark
+    public AddressParamV2 convertToV2() {
+        return AddressParamConverter.convertToV2(address);
+    }
+}
@@ -0,0 +1,102 @@
+package com.aoher.benchmark;
+
+import com.aoher.App;
+import com.aoher.model.Address;
+import com.aoher.service.AddressService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Dispatches V1 and V2 reads through each versioning strategy, once for handler lookup only and once
+ * through the whole dispatcher via MockMvc. {@code routeTable} false is dispatch before the route table,
+ * through the conditions of every mapping, for comparison with the table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private static final String API_VERSION = "X-API-Version";
+
+    @Param({"url", "header", "accept"})
+    public String strategy;
+
+    @Param({"V1", "V2"})
+    public String version;
+
+    @Param({"true", "false"})
+    public boolean routeTable;
+
+    private ConfigurableApplicationContext context;
+
+    private HandlerMapping handlerMapping;
+
+    private MockMvc mockMvc;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletRequestBuilder requestBuilder;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(App.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run("--address.dispatch.route-table=" + routeTable);
+        context.getBean(AddressService.class).save(new Address("12043", "Berlin"));
+        handlerMapping = context.getBean("requestMappingHandlerMapping", HandlerMapping.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        switch (strategy) {
+            case "url":
+                requestBuilder = get("/apiurl/" + version + "/address").header(ACCEPT, "application/json");
+                break;
+            case "header":
+                requestBuilder = get("/apiheader/address").header(ACCEPT, "application/json")
+                        .header(API_VERSION, version);
+                break;
+            default:
+                requestBuilder = get("/apiaccept/address")
+                        .header(ACCEPT, "application/vnd.company.app-" + version + "+json");
+                break;
+        }
+        request = requestBuilder.buildRequest(((WebApplicationContext) context).getServletContext());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public HandlerExecutionChain lookupHandler() throws Exception {
+        request.clearAttributes();
+        return handlerMapping.getHandler(request);
+    }
+
+    @Benchmark
+    public MvcResult dispatch() throws Exception {
+        return mockMvc.perform(requestBuilder).andReturn();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aoher.benchmark;
+
+import com.aoher.App;
+import com.aoher.model.AddressImportResult;
+import com.aoher.service.AddressImportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lines per second of a bulk import of a file of {@value #LINES} V1 lines, a fifth of them non-ASCII.
+ * Ids are line offsets, so repeated imports overwrite the same addresses instead of growing the store.
+ * Compare {@code parallelism} 1 with 0, which uses every core of the machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImportBenchmark {
+
+    private static final int LINES = 2_000_000;
+
+    private static final String[] TOWNS = {
+            "Berlin", "Hamburg", "M\u00fcnchen", "Frankfurt (Oder)", "Frankfurt am Main"
+    };
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private ConfigurableApplicationContext context;
+
+    private AddressImportService importService;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("addresses", ".txt");
+        SplittableRandom random = new SplittableRandom(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write(String.format("%05d %s %d\n", random.nextInt(100_000), TOWNS[i % TOWNS.length], i % 7));
+            }
+        }
+        context = new SpringApplicationBuilder(App.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN", "--address.import.parallelism=" + parallelism,
+                        "--address.import.chunk-bytes=1048576");
+        importService = context.getBean(AddressImportService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public AddressImportResult importFile() throws IOException {
+        return importService.importFile(file, "");
+    }
+}
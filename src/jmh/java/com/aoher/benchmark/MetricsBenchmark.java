@@ -0,0 +1,33 @@
+package com.aoher.benchmark;
+
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.version.ValidVersion;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+
+    private ApiMetrics metrics;
+
+    @Setup
+    public void setUp() {
+        metrics = new ApiMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+    }
+
+    @Benchmark
+    public void recordStage() {
+        metrics.recordSince(ApiMetrics.Stage.CONVERSION, ValidVersion.V1, System.nanoTime());
+    }
+}
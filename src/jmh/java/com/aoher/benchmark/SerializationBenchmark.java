@@ -0,0 +1,63 @@
+package com.aoher.benchmark;
+
+import com.aoher.converter.AddressParamConverter;
+import com.aoher.model.Address;
+import com.aoher.version.AddressParamV1;
+import com.aoher.version.AddressParamV2;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private AddressParamV1 addressParamV1;
+
+    private AddressParamV2 addressParamV2;
+
+    private byte[] jsonV1;
+
+    private byte[] jsonV2;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        Address address = new Address("12043", "Berlin");
+        addressParamV1 = AddressParamConverter.convertToV1(address);
+        addressParamV2 = AddressParamConverter.convertToV2(address);
+        jsonV1 = objectMapper.writeValueAsBytes(addressParamV1);
+        jsonV2 = objectMapper.writeValueAsBytes(addressParamV2);
+    }
+
+    @Benchmark
+    public byte[] writeV1() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(addressParamV1);
+    }
+
+    @Benchmark
+    public byte[] writeV2() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(addressParamV2);
+    }
+
+    @Benchmark
+    public AddressParamV1 readV1() throws IOException {
+        return objectMapper.readValue(jsonV1, AddressParamV1.class);
+    }
+
+    @Benchmark
+    public AddressParamV2 readV2() throws IOException {
+        return objectMapper.readValue(jsonV2, AddressParamV2.class);
+    }
+}
@@ -0,0 +1,146 @@
+package com.aoher.benchmark;
+
+import com.aoher.App;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from launching the application jar to its first successful {@code GET /apiurl/V1/hello}, with
+ * default settings and with the fast-startup profile, component index and an AppCDS archive from a
+ * training run. AppCDS cannot archive classes from directories, so this needs the thin jar of the
+ * fast-startup Maven profile: {@code mvn -P benchmark,fast-startup -DskipTests verify -Djmh.include=Startup}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    @Param({"default", "fast"})
+    public String mode;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    private Path jar;
+
+    private Path archive;
+
+    @Setup
+    public void setUp() throws Exception {
+        jar = findJar();
+        if ("fast".equals(mode)) {
+            archive = Files.createTempFile("startup-benchmark", ".jsa");
+            Files.delete(archive);
+            Process training = launch(freePort(), "-XX:ArchiveClassesAtExit=" + archive,
+                    "--startup.training-run=true");
+            if (!training.waitFor(2, TimeUnit.MINUTES) || training.exitValue() != 0 || !Files.exists(archive)) {
+                training.destroyForcibly();
+                throw new IllegalStateException("training run did not produce " + archive);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (archive != null) {
+            Files.deleteIfExists(archive);
+        }
+    }
+
+    @Benchmark
+    public long timeToFirstHello() throws Exception {
+        int port = freePort();
+        long start = System.nanoTime();
+        Process process = "fast".equals(mode)
+                ? launch(port, "-XX:SharedArchiveFile=" + archive)
+                : launch(port, "-Dspring.index.ignore=true");
+        try {
+            HttpRequest hello = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/apiurl/V1/hello"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            while (System.nanoTime() - start < TIMEOUT_NANOS) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("application exited with " + process.exitValue());
+                }
+                try {
+                    if (client.send(hello, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return System.nanoTime() - start;
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("no successful hello within two minutes");
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private Process launch(final int port, final String jvmOption, final String... appArgs) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add(jvmOption);
+        command.addAll(Arrays.asList("-jar", jar.toString(), "--server.port=" + port));
+        if ("fast".equals(mode)) {
+            command.add("--spring.profiles.active=fast-startup");
+        }
+        command.addAll(Arrays.asList(appArgs));
+        return new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static Path findJar() throws Exception {
+        Path target = Paths.get(App.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getParent();
+        if (!Files.isDirectory(target.resolve("lib"))) {
+            throw new IllegalStateException("no lib/ in " + target + ", build with -P fast-startup");
+        }
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(file -> file.toString().endsWith(".jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("no application jar with lib/ in " + target
+                            + ", build with -P fast-startup"));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.aoher.benchmark;
+
+import com.aoher.model.Address;
+import com.aoher.storage.CompactAddressStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per stored address, ids included, for the map of {@link Address} objects the service
+ * used before and for {@link CompactAddressStore}. Every record gets its own zip and town strings, as
+ * when they are parsed from requests, drawn from a thousand distinct towns. The result is printed after
+ * each iteration; the score is the time to fill the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class StoreFootprintBenchmark {
+
+    private static final int TOWNS = 1000;
+
+    @Param({"map", "compact"})
+    public String store;
+
+    @Param("10000000")
+    public int entries;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private Object filled;
+
+    private long before;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        filled = null;
+        before = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        long retained = usedHeap() - before;
+        System.out.printf("%n%s: %d entries retain %d MB, %.1f bytes per record%n",
+                store, entries, retained >> 20, (double) retained / entries);
+        filled = null;
+    }
+
+    @Benchmark
+    public Object fill() {
+        if ("map".equals(store)) {
+            ConcurrentMap<String, Address> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < entries; i++) {
+                map.put("id" + i, new Address(zip(i), town(i), i + 1));
+            }
+            filled = map;
+        } else {
+            CompactAddressStore compact = new CompactAddressStore();
+            for (int i = 0; i < entries; i++) {
+                compact.merge("id" + i, new Address(zip(i), town(i), i + 1));
+            }
+            filled = compact;
+        }
+        return filled;
+    }
+
+    private static String zip(final int i) {
+        return String.valueOf(10000 + i % 90000);
+    }
+
+    private static String town(final int i) {
+        return new StringBuilder("Town-").append(i % TOWNS).toString();
+    }
+
+    private long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,91 @@
+package com.aoher.benchmark;
+
+import com.aoher.model.Address;
+import com.aoher.storage.CompactAddressStore;
+import com.aoher.storage.TownMatches;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of town completion on a store of {@code addresses} addresses spread over
+ * {@code towns} distinct town names, a few of them very common. Prefixes of one to four characters
+ * are taken from random towns and upper-cased half of the time. Run with {@code -prof gc} to see that
+ * a lookup into a reused {@link TownMatches} allocates nothing. The time to fill the store, which
+ * maintains the index on every save, is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TownCompletionBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ber", "lin", "mün", "chen", "ham", "burg", "köln", "dorf", "stadt", "au",
+            "bach", "héim", "feld", "hau", "sen", "léip", "zig", "ros", "tock", "wald"
+    };
+
+    private static final int PREFIXES = 1024;
+
+    @Param("10000000")
+    public int addresses;
+
+    @Param("1000000")
+    public int towns;
+
+    private final CompactAddressStore store = new CompactAddressStore();
+
+    private final String[] prefixes = new String[PREFIXES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        for (int i = 0; i < addresses; i++) {
+            int town = (int) (towns * Math.pow(random.nextDouble(), 4));
+            store.merge("id" + i, new Address(String.valueOf(10000 + random.nextInt(90000)), town(town), i + 1));
+        }
+        System.out.printf("%nfilled %d addresses in %d ms%n", addresses,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        for (int i = 0; i < PREFIXES; i++) {
+            String town = town(random.nextInt(towns));
+            String prefix = town.substring(0, 1 + random.nextInt(Math.min(4, town.length())));
+            prefixes[i] = random.nextBoolean() ? prefix.toUpperCase() : prefix;
+        }
+    }
+
+    @Benchmark
+    public int complete(final Lookup lookup) {
+        store.completeTowns(prefixes[lookup.next++ & (PREFIXES - 1)], lookup.matches);
+        return lookup.matches.size();
+    }
+
+    private static String town(final int index) {
+        StringBuilder name = new StringBuilder();
+        int value = index;
+        do {
+            name.append(SYLLABLES[value % SYLLABLES.length]);
+            value /= SYLLABLES.length;
+        } while (value > 0);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    @State(Scope.Thread)
+    public static class Lookup {
+
+        private final TownMatches matches = new TownMatches(TownMatches.MAX_SIZE);
+
+        private int next;
+    }
+}
@@ -0,0 +1,76 @@
+package com.aoher.benchmark;
+
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.WireFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a versioned address per wire format. The payload size of each combination
+ * is printed during setup, since JMH has no metric for it. {@link #convertAndEncode} is the response
+ * path through a param and {@link #encodeAddress} the one through the hand-written serializers; compare
+ * their allocation with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE", "PROTOBUF"})
+    public WireFormat format;
+
+    @Param({"V1", "V2"})
+    public ValidVersion version;
+
+    private final AddressParamCodecs codecs = new AddressParamCodecs(new ObjectMapper());
+
+    private VersionedAddressConverter<?> converter;
+
+    private Address address;
+
+    private Object param;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        converter = VersionedAddressConverter.forVersion(version);
+        address = new Address("12043", "Berlin");
+        param = converter.toParam(address);
+        payload = codecs.encode(format, version, param);
+        System.out.printf("%n%s %s payload: %d bytes%n", version, format, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codecs.encode(format, version, param);
+    }
+
+    @Benchmark
+    public byte[] convertAndEncode() throws IOException {
+        return codecs.encode(format, version, converter.toParam(address));
+    }
+
+    @Benchmark
+    public byte[] encodeAddress() throws IOException {
+        return codecs.encodeAddress(format, version, address);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return codecs.decode(format, converter, payload);
+    }
+}
@@ -0,0 +1,96 @@
+package com.aoher.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that follows latency, after the gradient limiters of TCP congestion control.
+ * Each latency sample updates a short and a long moving average. While the short one stays within
+ * {@code tolerance} times the long one the limit grows by its square root per round trip, that is per
+ * limit's worth of samples, as long as it is actually used; beyond that every sample shrinks it in
+ * proportion, smoothed and down to half per step, within {@code [minLimit, maxLimit]}. The long
+ * average drops with latency at once but rises slowly, so it estimates latency without queueing; it
+ * still follows a lasting rise, so the limit recovers once the service has settled at a new normal.
+ */
+final class AdaptiveLimit {
+
+    private static final double SMOOTHING = 0.2;
+
+    private static final int SHORT_WINDOW = 10;
+
+    private static final int LONG_WINDOW = 500;
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    AdaptiveLimit(final int initialLimit, final int minLimit, final int maxLimit, final double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a permit unless {@code reserved} of the limit's permits would be left or fewer.
+     */
+    boolean tryAcquire(final int reserved) {
+        int max = getLimit() - reserved;
+        for (int current = inFlight.get(); current < max; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Releases a permit held for {@code rttNanos} and adapts the limit to it.
+     */
+    void release(final long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            double rtt = Math.max(1, rttNanos);
+            if (longRtt == 0) {
+                shortRtt = rtt;
+                longRtt = rtt;
+            } else {
+                shortRtt += (rtt - shortRtt) / SHORT_WINDOW;
+                // quick to follow latency down, so that a slow first request is soon forgotten
+                longRtt += (rtt - longRtt) / (rtt < longRtt ? SHORT_WINDOW : LONG_WINDOW);
+            }
+            double current = limit;
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRtt / shortRtt));
+            if (gradient == 1.0 && inFlightBefore * 2 < current) {
+                return;
+            }
+            double next = gradient == 1.0
+                    ? current + 1 / Math.sqrt(current)
+                    : current * (1 - SMOOTHING) + current * gradient * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        }
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,136 @@
+package com.aoher.admission;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Admission control per API version and versioning strategy, so that clients of one cannot take the
+ * request threads of another. Every combination has its own {@link AdaptiveLimit} on the requests in
+ * flight, and requests beyond it are rejected. With {@code address.admission.priority} set to reads or
+ * writes, the other kind is only admitted while {@code address.admission.reserve} of the limit is left,
+ * and always while nothing else is in flight.
+ * <p>
+ * Publishes {@value #LIMIT} and {@value #IN_FLIGHT} per strategy and version, and {@value #REJECTED}
+ * additionally tagged by kind.
+ */
+@Component
+@ConditionalOnProperty(name = "address.admission.enabled", havingValue = "true")
+public class AdmissionControl {
+
+    public static final String LIMIT = "api.admission.limit";
+
+    public static final String IN_FLIGHT = "api.admission.in-flight";
+
+    public static final String REJECTED = "api.admission.rejected";
+
+    public enum Priority {
+        NONE,
+        READS,
+        WRITES
+    }
+
+    private static final int VERSIONS = ValidVersion.values().length;
+
+    private static final String[] KINDS = {"read", "write"};
+
+    private final AdaptiveLimit[] limits = new AdaptiveLimit[VersioningStrategy.values().length * VERSIONS];
+
+    private final Counter[] rejected = new Counter[limits.length * KINDS.length];
+
+    private final Priority priority;
+
+    private final double reserve;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionControl(final MeterRegistry registry,
+                            @Value("${address.admission.initial-limit:20}") final int initialLimit,
+                            @Value("${address.admission.min-limit:1}") final int minLimit,
+                            @Value("${address.admission.max-limit:100}") final int maxLimit,
+                            @Value("${address.admission.tolerance:2.0}") final double tolerance,
+                            @Value("${address.admission.priority:none}") final String priority,
+                            @Value("${address.admission.reserve:0.2}") final double reserve,
+                            @Value("${address.admission.retry-after-seconds:1}") final long retryAfterSeconds) {
+        this.priority = Priority.valueOf(priority.trim().toUpperCase(Locale.ROOT));
+        this.reserve = reserve;
+        this.retryAfterSeconds = retryAfterSeconds;
+        for (VersioningStrategy strategy : VersioningStrategy.values()) {
+            for (ValidVersion version : ValidVersion.values()) {
+                int index = index(ApiVersion.of(strategy, version));
+                AdaptiveLimit limit = new AdaptiveLimit(initialLimit, minLimit, maxLimit, tolerance);
+                limits[index] = limit;
+                String strategyTag = strategy.name().toLowerCase(Locale.ROOT);
+                Gauge.builder(LIMIT, limit, AdaptiveLimit::getLimit)
+                        .tag("strategy", strategyTag).tag("version", version.name()).register(registry);
+                Gauge.builder(IN_FLIGHT, limit, AdaptiveLimit::getInFlight)
+                        .tag("strategy", strategyTag).tag("version", version.name()).register(registry);
+                for (int kind = 0; kind < KINDS.length; kind++) {
+                    rejected[index * KINDS.length + kind] = Counter.builder(REJECTED)
+                            .tag("strategy", strategyTag).tag("version", version.name()).tag("kind", KINDS[kind])
+                            .register(registry);
+                }
+            }
+        }
+    }
+
+    public static boolean isWrite(final String method) {
+        return !"GET".equals(method) && !"HEAD".equals(method);
+    }
+
+    /**
+     * Admits a request, which must then be released, or counts it as rejected.
+     */
+    public boolean tryAcquire(final ApiVersion apiVersion, final boolean write) {
+        int index = index(apiVersion);
+        AdaptiveLimit limit = limits[index];
+        boolean prioritized = priority == Priority.NONE || (priority == Priority.WRITES) == write;
+        if (limit.tryAcquire(prioritized ? 0 : reserved(limit.getLimit()))) {
+            return true;
+        }
+        rejected[index * KINDS.length + (write ? 1 : 0)].increment();
+        return false;
+    }
+
+    /**
+     * Releases a request that was handled in {@code rttNanos}, adapting the limit to that latency.
+     */
+    public void release(final ApiVersion apiVersion, final long rttNanos) {
+        limits[index(apiVersion)].release(rttNanos);
+    }
+
+    /**
+     * Releases a request without a latency sample, for requests that continue asynchronously.
+     */
+    public void release(final ApiVersion apiVersion) {
+        limits[index(apiVersion)].release();
+    }
+
+    public int getLimit(final ApiVersion apiVersion) {
+        return limits[index(apiVersion)].getLimit();
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Permits kept for the prioritized kind, at most all but one so that the other kind still gets in
+     * while the version is idle.
+     */
+    private int reserved(final int limit) {
+        return Math.min((int) Math.ceil(limit * reserve), limit - 1);
+    }
+
+    private static int index(final ApiVersion apiVersion) {
+        return apiVersion.getStrategy().ordinal() * VERSIONS + apiVersion.getVersion().ordinal();
+    }
+}
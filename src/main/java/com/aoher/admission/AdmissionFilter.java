@@ -0,0 +1,52 @@
+package com.aoher.admission;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.web.ApiVersionRequestCondition;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+
+/**
+ * Applies {@link AdmissionControl} before a request reaches Spring MVC, rejecting it with 503 and
+ * {@code Retry-After} without a body. A request that continues asynchronously, like an event stream,
+ * gives its permit back once it has released its request thread.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final AdmissionControl admission;
+
+    public AdmissionFilter(final AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain chain) throws ServletException, IOException {
+        ApiVersion apiVersion = ApiVersionRequestCondition.resolve(request);
+        if (apiVersion == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!admission.tryAcquire(apiVersion, AdmissionControl.isWrite(request.getMethod()))) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(RETRY_AFTER, Long.toString(admission.getRetryAfterSeconds()));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                admission.release(apiVersion);
+            } else {
+                admission.release(apiVersion, System.nanoTime() - start);
+            }
+        }
+    }
+}
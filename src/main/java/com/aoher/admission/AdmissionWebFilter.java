@@ -0,0 +1,45 @@
+package com.aoher.admission;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.web.reactive.ApiVersionRequestCondition;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Reactive counterpart of {@link AdmissionFilter}. A request holds its permit until the response has
+ * been written, errored or cancelled, so event streams, which stay open for as long as their
+ * subscriber, are left out.
+ */
+public class AdmissionWebFilter implements WebFilter {
+
+    private static final String CHANGES_PATH = "/addresses/changes";
+
+    private final AdmissionControl admission;
+
+    public AdmissionWebFilter(final AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        ApiVersion apiVersion = ApiVersionRequestCondition.resolve(exchange);
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (apiVersion == null || path.endsWith(CHANGES_PATH)) {
+            return chain.filter(exchange);
+        }
+        if (!admission.tryAcquire(apiVersion, AdmissionControl.isWrite(exchange.getRequest().getMethodValue()))) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(SERVICE_UNAVAILABLE);
+            response.getHeaders().set(RETRY_AFTER, Long.toString(admission.getRetryAfterSeconds()));
+            return response.setComplete();
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> admission.release(apiVersion, System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,111 @@
+package com.aoher.cache;
+
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.WireFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.aoher.metrics.ApiMetrics.Stage.CONVERSION;
+import static com.aoher.metrics.ApiMetrics.Stage.SERIALIZATION;
+
+/**
+ * Keeps the encoded response bodies of recently read addresses, one entry per address id holding
+ * a body per (version, media type). An entry is only served for the revision it was encoded from;
+ * every save gets a new revision, so a reader racing a save can never observe a stale body.
+ */
+@Component
+public class AddressResponseCache {
+
+    private final AddressParamCodecs codecs;
+
+    private final ApiMetrics metrics;
+
+    private final Cache<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public AddressResponseCache(final AddressParamCodecs codecs, final ApiMetrics metrics,
+                                @Value("${address.cache.maximum-size:10000}") final long maximumSize) {
+        this.codecs = codecs;
+        this.metrics = metrics;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public byte[] get(final String id, final Address address, final ValidVersion version, final WireFormat format,
+                      final MediaType mediaType) {
+        Entry entry = entries.getIfPresent(id);
+        if (entry == null || entry.revision != address.getRevision()) {
+            entry = new Entry(address);
+            entries.put(id, entry);
+        }
+
+        ConcurrentMap<MediaType, byte[]> bodies = entry.bodies[version.ordinal()];
+        byte[] body = bodies.get(mediaType);
+        if (body != null) {
+            hits.increment();
+            return body;
+        }
+        misses.increment();
+        body = encode(address, version, format);
+        bodies.putIfAbsent(mediaType, body);
+        return body;
+    }
+
+    public void invalidate(final String id) {
+        entries.invalidate(id);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    private byte[] encode(final Address address, final ValidVersion version, final WireFormat format) {
+        try {
+            long start = System.nanoTime();
+            byte[] body = codecs.encodeAddress(format, version, address, metrics.stage(CONVERSION, version));
+            metrics.recordSince(SERIALIZATION, version, start);
+            return body;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long revision;
+
+        @SuppressWarnings("unchecked")
+        private final ConcurrentMap<MediaType, byte[]>[] bodies = new ConcurrentMap[ValidVersion.values().length];
+
+        private Entry(final Address address) {
+            this.revision = address.getRevision();
+            for (int i = 0; i < bodies.length; i++) {
+                bodies[i] = new ConcurrentHashMap<>(4);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.aoher.config;
+
+import com.aoher.admission.AdmissionControl;
+import com.aoher.admission.AdmissionWebFilter;
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.metrics.ApiMetricsWebFilter;
+import com.aoher.web.reactive.ApiVersionArgumentResolver;
+import com.aoher.web.reactive.ApiVersionHandlerMapping;
+import com.aoher.web.reactive.VersionedParamArgumentResolver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxRegistrations;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.result.method.annotation.ArgumentResolverConfigurer;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+
+/**
+ * Reactive stack, active with {@code spring.main.web-application-type=reactive}. Tomcat is on the
+ * classpath for the servlet stack and would otherwise be picked as the reactive server too.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer, WebFluxRegistrations {
+
+    private final ApiMetrics metrics;
+
+    private final AddressParamCodecs codecs;
+
+    public ReactiveWebConfig(final ApiMetrics metrics, final AddressParamCodecs codecs) {
+        this.metrics = metrics;
+        this.codecs = codecs;
+    }
+
+    @Override
+    public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+        return new ApiVersionHandlerMapping();
+    }
+
+    @Override
+    public void configureArgumentResolvers(final ArgumentResolverConfigurer configurer) {
+        configurer.addCustomResolver(new ApiVersionArgumentResolver(), new VersionedParamArgumentResolver(metrics, codecs));
+    }
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ApiMetricsWebFilter apiMetricsWebFilter() {
+        return new ApiMetricsWebFilter(metrics);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "address.admission.enabled", havingValue = "true")
+    public AdmissionWebFilter admissionWebFilter(final AdmissionControl admission) {
+        return new AdmissionWebFilter(admission);
+    }
+}
@@ -0,0 +1,85 @@
+package com.aoher.config;
+
+import com.aoher.admission.AdmissionControl;
+import com.aoher.admission.AdmissionFilter;
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.metrics.ApiMetricsInterceptor;
+import com.aoher.web.ApiVersionArgumentResolver;
+import com.aoher.web.ApiVersionHandlerMapping;
+import com.aoher.web.VersionedParamArgumentResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.List;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+
+@Configuration
+@ConditionalOnWebApplication(type = SERVLET)
+public class WebConfig implements WebMvcConfigurer, WebMvcRegistrations {
+
+    private final ApiMetrics metrics;
+
+    private final AddressParamCodecs codecs;
+
+    private final boolean routeTable;
+
+    public WebConfig(final ApiMetrics metrics, final AddressParamCodecs codecs,
+                     @Value("${address.dispatch.route-table:true}") final boolean routeTable) {
+        this.metrics = metrics;
+        this.codecs = codecs;
+        this.routeTable = routeTable;
+    }
+
+    @Override
+    public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+        return new ApiVersionHandlerMapping(routeTable);
+    }
+
+    /**
+     * The route table binds the whole last segment as the id, so regular request mapping must not
+     * strip or interpret a dotted suffix either, whatever {@code spring.mvc.*} says.
+     */
+    @Override
+    public void configurePathMatch(final PathMatchConfigurer configurer) {
+        configurer.setUseSuffixPatternMatch(false);
+    }
+
+    @Override
+    public void configureContentNegotiation(final ContentNegotiationConfigurer configurer) {
+        configurer.favorPathExtension(false);
+    }
+
+    @Override
+    public void addArgumentResolvers(final List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new ApiVersionArgumentResolver());
+        resolvers.add(new VersionedParamArgumentResolver(metrics, codecs));
+    }
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(new ApiMetricsInterceptor(metrics))
+                .addPathPatterns("/apiurl/**", "/apiheader/**", "/apiaccept/**");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "address.admission.enabled", havingValue = "true")
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(final AdmissionControl admission) {
+        FilterRegistrationBean<AdmissionFilter> registration =
+                new FilterRegistrationBean<>(new AdmissionFilter(admission));
+        registration.addUrlPatterns("/apiurl/*", "/apiheader/*", "/apiaccept/*");
+        return registration;
+    }
+}
@@ -1,124 +1,235 @@
 package com.aoher.controller;
 
+import com.aoher.cache.AddressResponseCache;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.exception.AddressNotFoundException;
+import com.aoher.metrics.ApiMetrics;
 import com.aoher.model.Address;
+import com.aoher.model.AddressBatchResult;
+import com.aoher.model.AddressImportResult;
+import com.aoher.service.AddressBatchService;
+import com.aoher.service.AddressChangeFeed;
+import com.aoher.service.AddressExportService;
+import com.aoher.service.AddressImportService;
+import com.aoher.service.AddressQueryService;
 import com.aoher.service.AddressService;
-import com.aoher.version.AddressParamV1;
-import com.aoher.version.AddressParamV2;
+import com.aoher.service.ZipQuery;
+import com.aoher.util.ETags;
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersionedApi;
+import com.aoher.version.VersionedParam;
+import com.aoher.version.WireFormat;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
-
-import javax.validation.Valid;
-
-import static com.aoher.converter.AddressParamConverter.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongPredicate;
+
+import static com.aoher.metrics.ApiMetrics.Stage.SERVICE;
+import static com.aoher.util.Constants.DEFAULT_ADDRESS_ID;
+import static com.aoher.util.Constants.LAST_EVENT_ID_HEADER;
+import static com.aoher.util.Constants.WRITE_TOKEN_HEADER;
+import static com.aoher.version.ApiVersion.APPLICATION_NDJSON_VALUE;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
 import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
 
 @RestController
+@ConditionalOnWebApplication(type = SERVLET)
+@VersionedApi
 public class AddressController {
 
+    private static final String VND_V1_JSON_VALUE = "application/vnd.company.app-V1+json";
+    private static final String VND_V2_JSON_VALUE = "application/vnd.company.app-V2+json";
+    private static final String VND_V1_CBOR_VALUE = "application/vnd.company.app-V1+cbor";
+    private static final String VND_V2_CBOR_VALUE = "application/vnd.company.app-V2+cbor";
+    private static final String VND_V1_SMILE_VALUE = "application/vnd.company.app-V1+smile";
+    private static final String VND_V2_SMILE_VALUE = "application/vnd.company.app-V2+smile";
+    private static final String VND_V1_PROTOBUF_VALUE = "application/vnd.company.app-V1+protobuf";
+    private static final String VND_V2_PROTOBUF_VALUE = "application/vnd.company.app-V2+protobuf";
+    private static final String VND_V1_NDJSON_VALUE = "application/vnd.company.app-V1+ndjson";
+    private static final String VND_V2_NDJSON_VALUE = "application/vnd.company.app-V2+ndjson";
+    private static final String DEFAULT_PAGE_SIZE = "100";
+    private static final String DEFAULT_COMPLETIONS = "10";
+
     @Autowired
     private AddressService addressService;
 
-    @GetMapping(value = "/apiurl/V1/address", produces = APPLICATION_JSON_VALUE)
-    @ResponseBody
-    public AddressParamV1 getAddressUrlV1() {
-        Address address = addressService.load();
-        return convertToV1(address);
-    }
+    @Autowired
+    private AddressResponseCache responseCache;
 
-    @GetMapping(value = "/apiurl/V2/address", produces = APPLICATION_JSON_VALUE)
-    @ResponseBody
-    public AddressParamV2 getAddressUrlV2() {
-        Address address = addressService.load();
-        return convertToV2(address);
-    }
+    @Autowired
+    private AddressBatchService batchService;
 
-    @PostMapping("/apiurl/V1/address")
-    @ResponseBody
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressUrlV1(@Valid @ModelAttribute final AddressParamV1 addressParamV1) {
-        Address address =convertFromV1(addressParamV1);
-        addressService.save(address);
-    }
+    @Autowired
+    private AddressChangeFeed changeFeed;
 
-    @PostMapping("/apiurl/V2/address")
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressUrlV2(@Valid @ModelAttribute final AddressParamV2 addressParamV2) {
-        Address address = convertFromV2(addressParamV2);
-        addressService.save(address);
-    }
+    @Autowired
+    private AddressExportService exportService;
+
+    @Autowired
+    private AddressImportService importService;
+
+    @Autowired
+    private AddressQueryService queryService;
+
+    @Autowired
+    private ApiMetrics metrics;
 
     @GetMapping(
-            value = "/apiheader/address",
-            produces = APPLICATION_JSON_VALUE,
-            headers = "X-API-Version=V1")
-    @ResponseBody
-    public AddressParamV1 getAddressHeaderV1() {
-        Address address = addressService.load();
-        return convertToV1(address);
+            value = {
+                    "/apiurl/V1/address", "/apiurl/V2/address", "/apiheader/address", "/apiaccept/address",
+                    "/apiurl/V1/address/{id}", "/apiurl/V2/address/{id}",
+                    "/apiheader/address/{id}", "/apiaccept/address/{id}"
+            },
+            produces = {
+                    APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE,
+                    VND_V1_CBOR_VALUE, VND_V2_CBOR_VALUE, VND_V1_SMILE_VALUE, VND_V2_SMILE_VALUE,
+                    VND_V1_PROTOBUF_VALUE, VND_V2_PROTOBUF_VALUE
+            })
+    public ResponseEntity<byte[]> getAddress(final ApiVersion apiVersion,
+                                             @PathVariable(required = false) final String id,
+                                             @RequestHeader(name = WRITE_TOKEN_HEADER, required = false) final Long writeToken,
+                                             final WebRequest request) {
+        String key = id == null ? DEFAULT_ADDRESS_ID : id;
+        long start = System.nanoTime();
+        Address address = writeToken == null ? addressService.load(key) : addressService.load(key, writeToken);
+        metrics.recordSince(SERVICE, apiVersion.getVersion(), start);
+        if (address == null) {
+            throw new AddressNotFoundException(key);
+        }
+        WireFormat format = WireFormat.negotiate(apiVersion, request.getHeader(ACCEPT));
+        String etag = ETags.of(addressService.getEpoch(), address.getRevision(), apiVersion.getVersion(), format);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        MediaType mediaType = apiVersion.getMediaType(format);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(etag)
+                .body(responseCache.get(key, address, apiVersion.getVersion(), format, mediaType));
     }
 
-    @GetMapping(
-            value = "/apiheader/address",
-            produces = APPLICATION_JSON_VALUE,
-            headers = "X-API-Version=V2")
-    @ResponseBody
-    public AddressParamV2 getAddressHeaderV2() {
-        Address address = addressService.load();
-        return convertToV2(address);
+    @PostMapping({
+            "/apiurl/V1/address", "/apiurl/V2/address", "/apiheader/address", "/apiaccept/address",
+            "/apiurl/V1/address/{id}", "/apiurl/V2/address/{id}",
+            "/apiheader/address/{id}", "/apiaccept/address/{id}"
+    })
+    public ResponseEntity<Void> saveAddress(final ApiVersion apiVersion,
+                                            @PathVariable(required = false) final String id,
+                                            @RequestHeader(name = IF_MATCH, required = false) final String ifMatch,
+                                            @VersionedParam final Address address) {
+        long start = System.nanoTime();
+        LongPredicate precondition = ETags.ifMatch(ifMatch, addressService.getEpoch());
+        long token = addressService.submit(id == null ? DEFAULT_ADDRESS_ID : id, address, precondition);
+        metrics.recordSince(SERVICE, apiVersion.getVersion(), start);
+        return ResponseEntity.status(ACCEPTED)
+                .header(WRITE_TOKEN_HEADER, Long.toString(token))
+                .eTag(ETags.of(addressService.getEpoch(), token, apiVersion.getVersion(), WireFormat.JSON))
+                .build();
     }
 
     @PostMapping(
-            value = "/apiheader/address",
-            headers = "X-API-Version=V1")
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressHeaderV1(@Valid @ModelAttribute final AddressParamV1 addressParamV1) {
-        Address address = convertFromV1(addressParamV1);
-        addressService.save(address);
+            value = {"/apiurl/V1/addresses", "/apiurl/V2/addresses", "/apiheader/addresses", "/apiaccept/addresses"},
+            consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<AddressBatchResult> saveAddresses(final ApiVersion apiVersion,
+                                                            final InputStream body) throws IOException {
+        AddressBatchResult result = batchService.saveAll(body, VersionedAddressConverter.forVersion(apiVersion.getVersion()));
+        return ResponseEntity.status(result.isComplete() ? ACCEPTED : BAD_REQUEST)
+                .contentType(apiVersion.getJsonMediaType())
+                .body(result);
     }
 
-    @PostMapping(
-            value = "/apiheader/address",
-            headers = "X-API-Version=V2")
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressHeaderV2(@Valid @ModelAttribute final AddressParamV2 addressParamV2) {
-        Address address = convertFromV2(addressParamV2);
-        addressService.save(address);
+    /**
+     * Imports a file of V1 lines from {@code address.import.directory}, see {@link AddressImportService}.
+     */
+    @PostMapping({"/apiurl/V1/addresses/import", "/apiurl/V2/addresses/import", "/apiheader/addresses/import",
+            "/apiaccept/addresses/import"})
+    public ResponseEntity<AddressImportResult> importAddresses(final ApiVersion apiVersion,
+                                                               @RequestParam final String file,
+                                                               @RequestParam(required = false) final String prefix)
+            throws IOException {
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getJsonMediaType())
+                .body(importService.importFromDirectory(file, prefix));
     }
 
     @GetMapping(
-            value = "/apiaccept/address",
-            produces = "application/vnd.company.app-V1+json")
-    @ResponseBody
-    public AddressParamV1 getAddressAcceptV1() {
-        Address address = addressService.load();
-        return convertToV1(address);
+            value = {"/apiurl/V1/addresses", "/apiurl/V2/addresses", "/apiheader/addresses", "/apiaccept/addresses"},
+            produces = {APPLICATION_NDJSON_VALUE, VND_V1_NDJSON_VALUE, VND_V2_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportAddresses(final ApiVersion apiVersion) {
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getNdjsonMediaType())
+                .body(out -> exportService.export(apiVersion.getVersion(), out));
     }
 
     @GetMapping(
-            value = "/apiaccept/address",
-            produces = "application/vnd.company.app-V2+json")
-    @ResponseBody
-    public AddressParamV2 getAddressAcceptV2() {
-        Address address = addressService.load();
-        return convertToV2(address);
+            value = {"/apiurl/V1/addresses/zip", "/apiurl/V2/addresses/zip", "/apiheader/addresses/zip",
+                    "/apiaccept/addresses/zip"},
+            produces = {APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE})
+    public ResponseEntity<byte[]> findByZip(final ApiVersion apiVersion,
+                                            @RequestParam(required = false) final String prefix,
+                                            @RequestParam(required = false) final String from,
+                                            @RequestParam(required = false) final String to,
+                                            @RequestParam(required = false) final String cursor,
+                                            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int limit) {
+        ZipQuery query = ZipQuery.of(prefix, from, to);
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getJsonMediaType())
+                .body(queryService.page(apiVersion.getVersion(), query, ZipQuery.parseCursor(cursor), limit));
     }
 
-    @PostMapping(
-            value = "/apiaccept/address",
-            headers = "Accept=application/vnd.company.app-V1+json")
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressAcceptV1(@Valid @ModelAttribute final AddressParamV1 addressParamV1) {
-        Address address = convertFromV1(addressParamV1);
-        addressService.save(address);
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/zip", "/apiurl/V2/addresses/zip", "/apiheader/addresses/zip",
+                    "/apiaccept/addresses/zip"},
+            produces = {APPLICATION_NDJSON_VALUE, VND_V1_NDJSON_VALUE, VND_V2_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamByZip(final ApiVersion apiVersion,
+                                                             @RequestParam(required = false) final String prefix,
+                                                             @RequestParam(required = false) final String from,
+                                                             @RequestParam(required = false) final String to,
+                                                             @RequestParam(required = false) final String cursor) {
+        ZipQuery query = ZipQuery.of(prefix, from, to);
+        long after = ZipQuery.parseCursor(cursor);
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getNdjsonMediaType())
+                .body(out -> queryService.stream(apiVersion.getVersion(), query, after, out));
     }
 
-    @PostMapping(
-            value = "/apiaccept/address",
-            headers = "Accept=application/vnd.company.app-V2+json")
-    @ResponseStatus(ACCEPTED)
-    public void saveAddressAcceptV2(@ModelAttribute @Valid final AddressParamV2 addressParamV2) {
-        Address address = convertFromV2(addressParamV2);
-        addressService.save(address);
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/town", "/apiurl/V2/addresses/town", "/apiheader/addresses/town",
+                    "/apiaccept/addresses/town"},
+            produces = {APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE})
+    public ResponseEntity<byte[]> completeTown(final ApiVersion apiVersion,
+                                               @RequestParam final String prefix,
+                                               @RequestParam(defaultValue = DEFAULT_COMPLETIONS) final int limit) {
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getJsonMediaType())
+                .body(queryService.completeTown(apiVersion.getVersion(), prefix, limit));
+    }
+
+    /**
+     * Server-sent events for every applied save, see {@link AddressChangeFeed}. With the Accept strategy
+     * the vendor type is sent next to {@code text/event-stream}.
+     */
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/changes", "/apiurl/V2/addresses/changes", "/apiheader/addresses/changes",
+                    "/apiaccept/addresses/changes"},
+            produces = TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChanges(final ApiVersion apiVersion,
+                                                       @RequestHeader(name = LAST_EVENT_ID_HEADER, required = false)
+                                                       final String lastEventId) {
+        return changeFeed.subscribe(apiVersion.getVersion(), addressService.getEpoch(), lastEventId);
     }
 }
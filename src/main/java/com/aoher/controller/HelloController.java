@@ -2,11 +2,14 @@ package com.aoher.controller;
 
 import com.aoher.model.Hello;
 import com.aoher.version.ValidVersion;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.web.bind.annotation.*;
 
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.SERVLET;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 @RestController
+@ConditionalOnWebApplication(type = SERVLET)
 public class HelloController {
 
     @GetMapping(
@@ -0,0 +1,249 @@
+package com.aoher.controller.reactive;
+
+import com.aoher.cache.AddressResponseCache;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.exception.AddressNotFoundException;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.Address;
+import com.aoher.model.AddressBatchResult;
+import com.aoher.model.AddressImportResult;
+import com.aoher.service.AddressBatchService;
+import com.aoher.service.AddressChangeFeed;
+import com.aoher.service.AddressExportService;
+import com.aoher.service.AddressImportService;
+import com.aoher.service.AddressQueryService;
+import com.aoher.service.AddressService;
+import com.aoher.service.ZipQuery;
+import com.aoher.util.ETags;
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersionedApi;
+import com.aoher.version.VersionedParam;
+import com.aoher.version.WireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.function.LongPredicate;
+
+import static com.aoher.metrics.ApiMetrics.Stage.SERVICE;
+import static com.aoher.util.Constants.DEFAULT_ADDRESS_ID;
+import static com.aoher.util.Constants.LAST_EVENT_ID_HEADER;
+import static com.aoher.util.Constants.WRITE_TOKEN_HEADER;
+import static com.aoher.version.ApiVersion.APPLICATION_NDJSON_VALUE;
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
+import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
+
+/**
+ * Serves the same URLs, headers and vendor types as {@link com.aoher.controller.AddressController}
+ * on the reactive stack. Batch saves parse the body as it arrives but may wait for the journal, and
+ * imports wait for the import pool, so both run on the bounded elastic scheduler.
+ */
+@RestController
+@ConditionalOnWebApplication(type = REACTIVE)
+@VersionedApi
+public class AddressController {
+
+    private static final String VND_V1_JSON_VALUE = "application/vnd.company.app-V1+json";
+    private static final String VND_V2_JSON_VALUE = "application/vnd.company.app-V2+json";
+    private static final String VND_V1_CBOR_VALUE = "application/vnd.company.app-V1+cbor";
+    private static final String VND_V2_CBOR_VALUE = "application/vnd.company.app-V2+cbor";
+    private static final String VND_V1_SMILE_VALUE = "application/vnd.company.app-V1+smile";
+    private static final String VND_V2_SMILE_VALUE = "application/vnd.company.app-V2+smile";
+    private static final String VND_V1_PROTOBUF_VALUE = "application/vnd.company.app-V1+protobuf";
+    private static final String VND_V2_PROTOBUF_VALUE = "application/vnd.company.app-V2+protobuf";
+    private static final String VND_V1_NDJSON_VALUE = "application/vnd.company.app-V1+ndjson";
+    private static final String VND_V2_NDJSON_VALUE = "application/vnd.company.app-V2+ndjson";
+    private static final String DEFAULT_PAGE_SIZE = "100";
+    private static final String DEFAULT_COMPLETIONS = "10";
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private AddressResponseCache responseCache;
+
+    @Autowired
+    private AddressBatchService batchService;
+
+    @Autowired
+    private AddressChangeFeed changeFeed;
+
+    @Autowired
+    private AddressExportService exportService;
+
+    @Autowired
+    private AddressImportService importService;
+
+    @Autowired
+    private AddressQueryService queryService;
+
+    @Autowired
+    private ApiMetrics metrics;
+
+    @GetMapping(
+            value = {
+                    "/apiurl/V1/address", "/apiurl/V2/address", "/apiheader/address", "/apiaccept/address",
+                    "/apiurl/V1/address/{id}", "/apiurl/V2/address/{id}",
+                    "/apiheader/address/{id}", "/apiaccept/address/{id}"
+            },
+            produces = {
+                    APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE,
+                    VND_V1_CBOR_VALUE, VND_V2_CBOR_VALUE, VND_V1_SMILE_VALUE, VND_V2_SMILE_VALUE,
+                    VND_V1_PROTOBUF_VALUE, VND_V2_PROTOBUF_VALUE
+            })
+    public Mono<ResponseEntity<byte[]>> getAddress(final ApiVersion apiVersion,
+                                                   @PathVariable(required = false) final String id,
+                                                   @RequestHeader(name = WRITE_TOKEN_HEADER, required = false)
+                                                   final Long writeToken,
+                                                   final ServerWebExchange exchange) {
+        String key = id == null ? DEFAULT_ADDRESS_ID : id;
+        long start = System.nanoTime();
+        return (writeToken == null ? addressService.find(key) : addressService.find(key, writeToken))
+                .doOnTerminate(() -> metrics.recordSince(SERVICE, apiVersion.getVersion(), start))
+                .switchIfEmpty(Mono.error(() -> new AddressNotFoundException(key)))
+                .flatMap(address -> {
+                    WireFormat format = WireFormat.negotiate(apiVersion,
+                            exchange.getRequest().getHeaders().getFirst(ACCEPT));
+                    String etag = ETags.of(addressService.getEpoch(), address.getRevision(),
+                            apiVersion.getVersion(), format);
+                    if (exchange.checkNotModified(etag)) {
+                        return Mono.empty();
+                    }
+                    MediaType mediaType = apiVersion.getMediaType(format);
+                    return Mono.just(ResponseEntity.ok()
+                            .contentType(mediaType)
+                            .eTag(etag)
+                            .body(responseCache.get(key, address, apiVersion.getVersion(), format, mediaType)));
+                });
+    }
+
+    @PostMapping({
+            "/apiurl/V1/address", "/apiurl/V2/address", "/apiheader/address", "/apiaccept/address",
+            "/apiurl/V1/address/{id}", "/apiurl/V2/address/{id}",
+            "/apiheader/address/{id}", "/apiaccept/address/{id}"
+    })
+    public Mono<ResponseEntity<Void>> saveAddress(final ApiVersion apiVersion,
+                                                  @PathVariable(required = false) final String id,
+                                                  @RequestHeader(name = IF_MATCH, required = false) final String ifMatch,
+                                                  @VersionedParam final Address address) {
+        long start = System.nanoTime();
+        LongPredicate precondition = ETags.ifMatch(ifMatch, addressService.getEpoch());
+        return addressService.store(id == null ? DEFAULT_ADDRESS_ID : id, address, precondition)
+                .doOnTerminate(() -> metrics.recordSince(SERVICE, apiVersion.getVersion(), start))
+                .map(token -> ResponseEntity.status(ACCEPTED)
+                        .header(WRITE_TOKEN_HEADER, Long.toString(token))
+                        .eTag(ETags.of(addressService.getEpoch(), token, apiVersion.getVersion(), WireFormat.JSON))
+                        .build());
+    }
+
+    @PostMapping(
+            value = {"/apiurl/V1/addresses", "/apiurl/V2/addresses", "/apiheader/addresses", "/apiaccept/addresses"},
+            consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<AddressBatchResult>> saveAddresses(final ApiVersion apiVersion,
+                                                                  final ServerHttpRequest request) {
+        return batchService.saveAll(request.getBody().publishOn(Schedulers.boundedElastic()),
+                VersionedAddressConverter.forVersion(apiVersion.getVersion()))
+                .map(result -> ResponseEntity.status(result.isComplete() ? ACCEPTED : BAD_REQUEST)
+                        .contentType(apiVersion.getJsonMediaType())
+                        .body(result));
+    }
+
+    /**
+     * Imports a file of V1 lines from {@code address.import.directory}, see {@link AddressImportService}.
+     */
+    @PostMapping({"/apiurl/V1/addresses/import", "/apiurl/V2/addresses/import", "/apiheader/addresses/import",
+            "/apiaccept/addresses/import"})
+    public Mono<ResponseEntity<AddressImportResult>> importAddresses(final ApiVersion apiVersion,
+                                                                     @RequestParam final String file,
+                                                                     @RequestParam(required = false) final String prefix) {
+        return Mono.fromCallable(() -> importService.importFromDirectory(file, prefix))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(result -> ResponseEntity.ok()
+                        .contentType(apiVersion.getJsonMediaType())
+                        .body(result));
+    }
+
+    @GetMapping(
+            value = {"/apiurl/V1/addresses", "/apiurl/V2/addresses", "/apiheader/addresses", "/apiaccept/addresses"},
+            produces = {APPLICATION_NDJSON_VALUE, VND_V1_NDJSON_VALUE, VND_V2_NDJSON_VALUE})
+    public ResponseEntity<Flux<DataBuffer>> exportAddresses(final ApiVersion apiVersion,
+                                                           final ServerHttpResponse response) {
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getNdjsonMediaType())
+                .body(exportService.export(apiVersion.getVersion(), response.bufferFactory()));
+    }
+
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/zip", "/apiurl/V2/addresses/zip", "/apiheader/addresses/zip",
+                    "/apiaccept/addresses/zip"},
+            produces = {APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE})
+    public ResponseEntity<byte[]> findByZip(final ApiVersion apiVersion,
+                                            @RequestParam(required = false) final String prefix,
+                                            @RequestParam(required = false) final String from,
+                                            @RequestParam(required = false) final String to,
+                                            @RequestParam(required = false) final String cursor,
+                                            @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int limit) {
+        ZipQuery query = ZipQuery.of(prefix, from, to);
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getJsonMediaType())
+                .body(queryService.page(apiVersion.getVersion(), query, ZipQuery.parseCursor(cursor), limit));
+    }
+
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/zip", "/apiurl/V2/addresses/zip", "/apiheader/addresses/zip",
+                    "/apiaccept/addresses/zip"},
+            produces = {APPLICATION_NDJSON_VALUE, VND_V1_NDJSON_VALUE, VND_V2_NDJSON_VALUE})
+    public ResponseEntity<Flux<DataBuffer>> streamByZip(final ApiVersion apiVersion,
+                                                       @RequestParam(required = false) final String prefix,
+                                                       @RequestParam(required = false) final String from,
+                                                       @RequestParam(required = false) final String to,
+                                                       @RequestParam(required = false) final String cursor,
+                                                       final ServerHttpResponse response) {
+        ZipQuery query = ZipQuery.of(prefix, from, to);
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getNdjsonMediaType())
+                .body(queryService.stream(apiVersion.getVersion(), query, ZipQuery.parseCursor(cursor),
+                        response.bufferFactory()));
+    }
+
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/town", "/apiurl/V2/addresses/town", "/apiheader/addresses/town",
+                    "/apiaccept/addresses/town"},
+            produces = {APPLICATION_JSON_VALUE, VND_V1_JSON_VALUE, VND_V2_JSON_VALUE})
+    public ResponseEntity<byte[]> completeTown(final ApiVersion apiVersion,
+                                               @RequestParam final String prefix,
+                                               @RequestParam(defaultValue = DEFAULT_COMPLETIONS) final int limit) {
+        return ResponseEntity.ok()
+                .contentType(apiVersion.getJsonMediaType())
+                .body(queryService.completeTown(apiVersion.getVersion(), prefix, limit));
+    }
+
+    /**
+     * Server-sent events for every applied save, see {@link AddressChangeFeed}. With the Accept strategy
+     * the vendor type is sent next to {@code text/event-stream}.
+     */
+    @GetMapping(
+            value = {"/apiurl/V1/addresses/changes", "/apiurl/V2/addresses/changes", "/apiheader/addresses/changes",
+                    "/apiaccept/addresses/changes"},
+            produces = TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamChanges(final ApiVersion apiVersion,
+                                                       @RequestHeader(name = LAST_EVENT_ID_HEADER, required = false)
+                                                       final String lastEventId) {
+        return changeFeed.subscribe(apiVersion.getVersion(), addressService.getEpoch(), lastEventId);
+    }
+}
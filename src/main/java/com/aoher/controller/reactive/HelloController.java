@@ -0,0 +1,38 @@
+package com.aoher.controller.reactive;
+
+import com.aoher.model.Hello;
+import com.aoher.version.ValidVersion;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type.REACTIVE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@RestController
+@ConditionalOnWebApplication(type = REACTIVE)
+public class HelloController {
+
+    @GetMapping(
+            value = "/apiurl/{version}/hello",
+            produces = APPLICATION_JSON_VALUE)
+    public Mono<Hello> sayHelloWorldUrl(@PathVariable final ValidVersion version) {
+        return Mono.just(new Hello());
+    }
+
+    @GetMapping(
+            value = "/apiheader/hello",
+            produces = APPLICATION_JSON_VALUE)
+    public Mono<Hello> sayHelloWorldHeader(@RequestHeader("X-API-Version") final ValidVersion validVersion) {
+        return Mono.just(new Hello());
+    }
+
+    @GetMapping(value = "/apiaccept/hello",
+            produces = {
+            "application/vnd.company.app-v1+json",
+            "application/vnd.company.app-v2+json"
+    })
+    public Mono<Hello> sayHelloWorldAccept() {
+        return Mono.just(new Hello());
+    }
+}
@@ -0,0 +1,123 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.WireFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+/**
+ * Readers and writers of the versioned params for every {@link WireFormat}, created once. JSON goes
+ * through the application's {@link ObjectMapper}, so its contract does not change; protobuf uses the
+ * schemas in {@code proto/address_param_v1.proto} and {@code proto/address_param_v2.proto}.
+ * <p>
+ * Responses are written from the {@link Address} itself by {@link AddressSerializers}, through a copy
+ * of each mapper per version, so reads do not build a param for every body they encode.
+ */
+@Component
+public class AddressParamCodecs {
+
+    private static final int VERSIONS = ValidVersion.values().length;
+
+    private final ObjectWriter[] writers = new ObjectWriter[WireFormat.values().length * VERSIONS];
+
+    private final ObjectReader[] readers = new ObjectReader[WireFormat.values().length * VERSIONS];
+
+    private final ObjectWriter[] addressWriters = new ObjectWriter[WireFormat.values().length * VERSIONS];
+
+    public AddressParamCodecs(final ObjectMapper objectMapper) {
+        ObjectMapper cborMapper = new CBORMapper();
+        ObjectMapper smileMapper = new SmileMapper();
+        ProtobufMapper protobufMapper = new ProtobufMapper();
+        for (ValidVersion version : ValidVersion.values()) {
+            Class<?> paramType = VersionedAddressConverter.forVersion(version).getParamType();
+            register(WireFormat.JSON, version, objectMapper.writerFor(paramType), objectMapper.readerFor(paramType));
+            register(WireFormat.CBOR, version, cborMapper.writerFor(paramType), cborMapper.readerFor(paramType));
+            register(WireFormat.SMILE, version, smileMapper.writerFor(paramType), smileMapper.readerFor(paramType));
+            ProtobufSchema schema = protobufSchema(protobufMapper, version);
+            register(WireFormat.PROTOBUF, version, protobufMapper.writerFor(paramType).with(schema),
+                    protobufMapper.readerFor(paramType).with(schema));
+
+            addressWriters[index(WireFormat.JSON, version)] = addressWriter(objectMapper, version);
+            addressWriters[index(WireFormat.CBOR, version)] = addressWriter(cborMapper, version);
+            addressWriters[index(WireFormat.SMILE, version)] = addressWriter(smileMapper, version);
+            addressWriters[index(WireFormat.PROTOBUF, version)] = addressWriter(protobufMapper, version).with(schema);
+        }
+    }
+
+    public byte[] encode(final WireFormat format, final ValidVersion version, final Object param)
+            throws JsonProcessingException {
+        return writers[index(format, version)].writeValueAsBytes(param);
+    }
+
+    /**
+     * Encodes {@code address} exactly as {@link #encode} encodes its param for {@code version}.
+     */
+    public byte[] encodeAddress(final WireFormat format, final ValidVersion version, final Address address)
+            throws JsonProcessingException {
+        return addressWriters[index(format, version)].writeValueAsBytes(address);
+    }
+
+    /**
+     * {@link #encodeAddress(WireFormat, ValidVersion, Address)} that records the conversion of the address
+     * into the body's fields on {@code conversion}.
+     */
+    public byte[] encodeAddress(final WireFormat format, final ValidVersion version, final Address address,
+                                final Timer conversion) throws JsonProcessingException {
+        return addressWriters[index(format, version)]
+                .withAttribute(AddressSerializers.CONVERSION_TIMER, conversion)
+                .writeValueAsBytes(address);
+    }
+
+    public <P> P decode(final WireFormat format, final VersionedAddressConverter<P> converter, final byte[] body)
+            throws IOException {
+        return readers[index(format, converter.getVersion())].readValue(body);
+    }
+
+    public <P> P decode(final WireFormat format, final VersionedAddressConverter<P> converter, final InputStream body)
+            throws IOException {
+        return readers[index(format, converter.getVersion())].readValue(body);
+    }
+
+    private void register(final WireFormat format, final ValidVersion version,
+                          final ObjectWriter writer, final ObjectReader reader) {
+        writers[index(format, version)] = writer;
+        readers[index(format, version)] = reader;
+    }
+
+    private static ObjectWriter addressWriter(final ObjectMapper mapper, final ValidVersion version) {
+        SimpleModule module = new SimpleModule("address-" + version.name())
+                .addSerializer(Address.class, AddressSerializers.forVersion(version));
+        return mapper.copy().registerModule(module).writerFor(Address.class);
+    }
+
+    private static ProtobufSchema protobufSchema(final ProtobufMapper mapper, final ValidVersion version) {
+        String resource = "/proto/address_param_" + version.name().toLowerCase(Locale.ROOT) + ".proto";
+        try (InputStream in = AddressParamCodecs.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("missing protobuf schema " + resource);
+            }
+            return mapper.schemaLoader().load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int index(final WireFormat format, final ValidVersion version) {
+        return format.ordinal() * VERSIONS + version.ordinal();
+    }
+}
@@ -4,11 +4,6 @@ import com.aoher.model.Address;
 import com.aoher.version.AddressParamV1;
 import com.aoher.version.AddressParamV2;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static com.aoher.util.Constants.ADDRESS_PATTERN;
-
 public class AddressParamConverter {
 
     public static AddressParamV1 convertToV1(final Address address) {
@@ -25,18 +20,9 @@ public class AddressParamConverter {
     }
 
     public static Address convertFromV1(final  AddressParamV1 addressParamV1) {
-        final String zip;
-        final String town;
-
-        Pattern pattern = Pattern.compile(ADDRESS_PATTERN);
-        Matcher matcher = pattern.matcher(addressParamV1.getAddress());
-        if (!matcher.matches()) {
-            throw new IllegalArgumentException("unparsable address " + addressParamV1.getAddress());
-        }
-
-        zip = matcher.group(1);
-        town = matcher.group(2);
-        return new Address(zip, town);
+        return addressParamV1.isParsed()
+                ? V1AddressParser.split(addressParamV1.getAddress())
+                : V1AddressParser.parse(addressParamV1.getAddress());
     }
 
     public static Address convertFromV2(final AddressParamV2 addressParamV2) {
@@ -0,0 +1,152 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes an {@link Address} as the body of a versioned param without creating the param. The output is
+ * byte for byte what the bean serializer writes for {@link AddressParamConverter#convertToV1} and
+ * {@link AddressParamConverter#convertToV2}, in every wire format. A {@link Timer} set as the writer
+ * attribute {@link #CONVERSION_TIMER} records how long it takes to turn the address into the values of
+ * the body's fields, which is what converting to the param used to cost.
+ */
+public final class AddressSerializers {
+
+    public static final Object CONVERSION_TIMER = new Object();
+
+    private static final SerializableString ADDRESS = new SerializedString("address");
+
+    private static final SerializableString ZIP = new SerializedString("zip");
+
+    private static final SerializableString TOWN = new SerializedString("town");
+
+    private static final String NULL = "null";
+
+    private static final JsonSerializer<?>[] BY_VERSION = {new V1(), new V2()};
+
+    @SuppressWarnings("unchecked")
+    public static JsonSerializer<Address> forVersion(final ValidVersion version) {
+        return (JsonSerializer<Address>) BY_VERSION[version.ordinal()];
+    }
+
+    /**
+     * {@code {"address":"<zip> <town>"}}. On platform threads the zip, the space and the town are copied
+     * into a per-thread buffer of at most {@value #MAX_BUFFER} chars, so the concatenated string is never
+     * built; longer addresses, and virtual threads, which would each fill a new buffer, concatenate.
+     * {@code null} parts are written as "null" like string concatenation does.
+     */
+    private static final class V1 extends StdSerializer<Address> {
+
+        private static final int MAX_BUFFER = 256;
+
+        private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[64]);
+
+        private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+        private V1() {
+            super(Address.class);
+        }
+
+        @Override
+        public void serialize(final Address address, final JsonGenerator generator, final SerializerProvider provider)
+                throws IOException {
+            Timer timer = (Timer) provider.getAttribute(CONVERSION_TIMER);
+            long start = timer == null ? 0 : System.nanoTime();
+            String zip = address.getZip() == null ? NULL : address.getZip();
+            String town = address.getTown() == null ? NULL : address.getTown();
+            int length = zip.length() + 1 + town.length();
+            if (length > MAX_BUFFER || isVirtual()) {
+                String text = zip + ' ' + town;
+                recordConversion(timer, start);
+                generator.writeStartObject(address);
+                generator.writeFieldName(ADDRESS);
+                generator.writeString(text);
+                generator.writeEndObject();
+                return;
+            }
+            char[] buffer = BUFFER.get();
+            if (buffer.length < length) {
+                buffer = new char[Math.min(MAX_BUFFER, Math.max(length, buffer.length * 2))];
+                BUFFER.set(buffer);
+            }
+            zip.getChars(0, zip.length(), buffer, 0);
+            buffer[zip.length()] = ' ';
+            town.getChars(0, town.length(), buffer, zip.length() + 1);
+            recordConversion(timer, start);
+
+            generator.writeStartObject(address);
+            generator.writeFieldName(ADDRESS);
+            generator.writeString(buffer, 0, length);
+            generator.writeEndObject();
+        }
+
+        private static boolean isVirtual() {
+            try {
+                return IS_VIRTUAL != null && (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+            } catch (Throwable e) {
+                return false;
+            }
+        }
+
+        /**
+         * {@code Thread.isVirtual()} on JDK 21 and newer, {@code null} before.
+         */
+        private static MethodHandle isVirtualHandle() {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * {@code {"zip":"<zip>","town":"<town>"}}, with {@code null} for a missing part.
+     */
+    private static final class V2 extends StdSerializer<Address> {
+
+        private V2() {
+            super(Address.class);
+        }
+
+        @Override
+        public void serialize(final Address address, final JsonGenerator generator, final SerializerProvider provider)
+                throws IOException {
+            Timer timer = (Timer) provider.getAttribute(CONVERSION_TIMER);
+            long start = timer == null ? 0 : System.nanoTime();
+            String zip = address.getZip();
+            String town = address.getTown();
+            recordConversion(timer, start);
+
+            generator.writeStartObject(address);
+            generator.writeFieldName(ZIP);
+            generator.writeString(zip);
+            generator.writeFieldName(TOWN);
+            generator.writeString(town);
+            generator.writeEndObject();
+        }
+    }
+
+    private static void recordConversion(final Timer timer, final long startNanos) {
+        if (timer != null) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private AddressSerializers() {
+    }
+}
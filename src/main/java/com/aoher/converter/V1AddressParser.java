@@ -0,0 +1,61 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+
+import static com.aoher.util.Constants.ADDRESS_PATTERN;
+
+/**
+ * Hand-written equivalent of {@link com.aoher.util.Constants#ADDRESS_PATTERN}: five ASCII digits, a space
+ * and a town without line terminators, exactly what {@code .} refuses without {@code DOTALL}. Checking
+ * does not allocate; splitting only allocates the zip and town strings.
+ */
+public final class V1AddressParser {
+
+    private static final int ZIP_LENGTH = 5;
+
+    private V1AddressParser() {
+    }
+
+    public static boolean isValid(final String address) {
+        int length = address.length();
+        if (length <= ZIP_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < ZIP_LENGTH; i++) {
+            char c = address.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (address.charAt(ZIP_LENGTH) != ' ') {
+            return false;
+        }
+        for (int i = ZIP_LENGTH + 1; i < length; i++) {
+            if (isLineTerminator(address.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits an address that {@link #isValid} accepted.
+     */
+    public static Address split(final String address) {
+        return new Address(address.substring(0, ZIP_LENGTH), address.substring(ZIP_LENGTH + 1));
+    }
+
+    public static Address parse(final String address) {
+        if (address == null || !isValid(address)) {
+            throw new IllegalArgumentException("unparsable address " + address + ", expected " + ADDRESS_PATTERN);
+        }
+        return split(address);
+    }
+
+    /**
+     * Whether {@code c} ends a line for {@code .}, and so must not appear in a town.
+     */
+    public static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,54 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+import com.aoher.version.AddressParamV1;
+import com.aoher.version.AddressParamV2;
+import com.aoher.version.ValidVersion;
+
+import java.util.function.Function;
+
+public final class VersionedAddressConverter<P> {
+
+    private static final VersionedAddressConverter<?>[] BY_VERSION = {
+            new VersionedAddressConverter<>(ValidVersion.V1, AddressParamV1.class,
+                    AddressParamConverter::convertToV1, AddressParamConverter::convertFromV1),
+            new VersionedAddressConverter<>(ValidVersion.V2, AddressParamV2.class,
+                    AddressParamConverter::convertToV2, AddressParamConverter::convertFromV2)
+    };
+
+    private final ValidVersion version;
+
+    private final Class<P> paramType;
+
+    private final Function<Address, P> toParam;
+
+    private final Function<P, Address> fromParam;
+
+    private VersionedAddressConverter(final ValidVersion version, final Class<P> paramType,
+                                      final Function<Address, P> toParam, final Function<P, Address> fromParam) {
+        this.version = version;
+        this.paramType = paramType;
+        this.toParam = toParam;
+        this.fromParam = fromParam;
+    }
+
+    public static VersionedAddressConverter<?> forVersion(final ValidVersion version) {
+        return BY_VERSION[version.ordinal()];
+    }
+
+    public ValidVersion getVersion() {
+        return version;
+    }
+
+    public Class<P> getParamType() {
+        return paramType;
+    }
+
+    public P toParam(final Address address) {
+        return toParam.apply(address);
+    }
+
+    public Address fromParam(final P param) {
+        return fromParam.apply(param);
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+@ResponseStatus(NOT_FOUND)
+public class AddressNotFoundException extends RuntimeException {
+
+    public AddressNotFoundException(final String id) {
+        super("no address stored for id " + id);
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@ResponseStatus(BAD_REQUEST)
+public class InvalidQueryException extends RuntimeException {
+
+    public InvalidQueryException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+
+@ResponseStatus(PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(final String id) {
+        super("address " + id + " does not match If-Match");
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+
+@ResponseStatus(INTERNAL_SERVER_ERROR)
+public class WriteFailedException extends RuntimeException {
+
+    public WriteFailedException(final String id, final long token) {
+        super("write " + token + " to id " + id + " failed");
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@ResponseStatus(SERVICE_UNAVAILABLE)
+public class WriteNotAppliedException extends RuntimeException {
+
+    public WriteNotAppliedException(final String id, final long token) {
+        super("write " + token + " to id " + id + " is not applied yet");
+    }
+}
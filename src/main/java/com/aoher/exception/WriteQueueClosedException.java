@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@ResponseStatus(SERVICE_UNAVAILABLE)
+public class WriteQueueClosedException extends RuntimeException {
+
+    public WriteQueueClosedException() {
+        super("write queue is shutting down");
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.exception;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+@ResponseStatus(TOO_MANY_REQUESTS)
+public class WriteQueueFullException extends RuntimeException {
+
+    public WriteQueueFullException(final int capacity) {
+        super("write queue is full with " + capacity + " pending saves, retry later");
+    }
+}
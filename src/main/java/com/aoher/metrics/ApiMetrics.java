@@ -0,0 +1,98 @@
+package com.aoher.metrics;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers tagged by API version and versioning strategy. Every timer is registered once and then
+ * looked up by array index, so recording on the request path costs a clock read and a histogram
+ * update but no meter registry lookup.
+ */
+@Component
+public class ApiMetrics {
+
+    public static final String REQUESTS = "api.requests";
+
+    public static final String STAGES = "api.stages";
+
+    private static final String NONE = "none";
+
+    private static final int VERSIONS = ValidVersion.values().length;
+
+    private static final int API_VERSIONS = VersioningStrategy.values().length * VERSIONS;
+
+    public enum Stage {
+        VALIDATION,
+        CONVERSION,
+        SERVICE,
+        SERIALIZATION
+    }
+
+    private final MeterRegistry registry;
+
+    private final Map<Method, Timer[]> requests = new ConcurrentHashMap<>();
+
+    private final Timer[] stages = new Timer[Stage.values().length * VERSIONS];
+
+    public ApiMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            for (ValidVersion version : ValidVersion.values()) {
+                stages[stage.ordinal() * VERSIONS + version.ordinal()] = Timer.builder(STAGES)
+                        .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                        .tag("version", version.name())
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+        }
+    }
+
+    public Timer request(final Method handler, final ApiVersion apiVersion) {
+        Timer[] timers = requests.computeIfAbsent(handler, this::requestTimers);
+        return apiVersion == null ? timers[API_VERSIONS] : timers[index(apiVersion)];
+    }
+
+    public Timer stage(final Stage stage, final ValidVersion version) {
+        return stages[stage.ordinal() * VERSIONS + version.ordinal()];
+    }
+
+    public void recordSince(final Stage stage, final ValidVersion version, final long startNanos) {
+        stage(stage, version).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer[] requestTimers(final Method handler) {
+        String operation = handler.getDeclaringClass().getSimpleName() + '.' + handler.getName();
+        Timer[] timers = new Timer[API_VERSIONS + 1];
+        for (VersioningStrategy strategy : VersioningStrategy.values()) {
+            for (ValidVersion version : ValidVersion.values()) {
+                ApiVersion apiVersion = ApiVersion.of(strategy, version);
+                timers[index(apiVersion)] = requestTimer(operation, strategy.name(), version.name());
+            }
+        }
+        timers[API_VERSIONS] = requestTimer(operation, NONE, NONE);
+        return timers;
+    }
+
+    private Timer requestTimer(final String operation, final String strategy, final String version) {
+        return Timer.builder(REQUESTS)
+                .tag("operation", operation)
+                .tag("strategy", strategy.toLowerCase(Locale.ROOT))
+                .tag("version", version)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static int index(final ApiVersion apiVersion) {
+        return apiVersion.getStrategy().ordinal() * VERSIONS + apiVersion.getVersion().ordinal();
+    }
+}
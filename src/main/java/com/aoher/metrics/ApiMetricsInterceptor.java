@@ -0,0 +1,44 @@
+package com.aoher.metrics;
+
+import com.aoher.web.ApiVersionRequestCondition;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times handler execution per version and strategy. For asynchronous handlers the timer spans from
+ * the first dispatch to the completion of the async dispatch.
+ */
+public class ApiMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = ApiMetricsInterceptor.class.getName() + ".start";
+
+    private final ApiMetrics metrics;
+
+    public ApiMetricsInterceptor(final ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+                             final Object handler) {
+        if (handler instanceof HandlerMethod && request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+                                final Object handler, final Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null) {
+            return;
+        }
+        metrics.request(((HandlerMethod) handler).getMethod(), ApiVersionRequestCondition.resolve(request))
+                .record(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+    }
+}
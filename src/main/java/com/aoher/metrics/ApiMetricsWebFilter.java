@@ -0,0 +1,40 @@
+package com.aoher.metrics;
+
+import com.aoher.version.VersioningStrategy;
+import com.aoher.web.reactive.ApiVersionRequestCondition;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reactive counterpart of {@link ApiMetricsInterceptor}. The timer spans from the start of the filter
+ * chain until the response has been written, errored or cancelled.
+ */
+public class ApiMetricsWebFilter implements WebFilter {
+
+    private final ApiMetrics metrics;
+
+    public ApiMetricsWebFilter(final ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        if (VersioningStrategy.of(exchange.getRequest().getPath().pathWithinApplication().value()) == null) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            Object handler = exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+            if (handler instanceof HandlerMethod) {
+                metrics.request(((HandlerMethod) handler).getMethod(), ApiVersionRequestCondition.resolve(exchange))
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+}
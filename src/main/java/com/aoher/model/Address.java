@@ -6,9 +6,16 @@ public class Address {
 
     private final String town;
 
+    private final long revision;
+
     public Address(final String zip, final String town) {
+        this(zip, town, 0L);
+    }
+
+    public Address(final String zip, final String town, final long revision) {
         this.zip = zip;
         this.town = town;
+        this.revision = revision;
     }
 
     public String getZip() {
@@ -18,4 +25,12 @@ public class Address {
     public String getTown() {
         return town;
     }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public Address withRevision(final long revision) {
+        return new Address(zip, town, revision);
+    }
 }
@@ -0,0 +1,90 @@
+package com.aoher.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch save. Every item is counted, but only the first {@value #MAX_REPORTED_ERRORS}
+ * rejected items are reported, so the result does not grow with the body. A body that stops parsing
+ * ends the batch; {@code malformedAt} is then the index of the item that could not be read, and the
+ * counts tell how many items before it were applied or rejected.
+ */
+public class AddressBatchResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private long accepted;
+
+    private long rejected;
+
+    private final List<ItemError> errors = new ArrayList<>();
+
+    private Long malformedAt;
+
+    private String malformedError;
+
+    public void accept() {
+        accepted++;
+    }
+
+    public void reject(final long index, final String id, final String error) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new ItemError(index, id, error));
+        }
+    }
+
+    public void malformed(final long index, final String error) {
+        malformedAt = index;
+        malformedError = error;
+    }
+
+    public boolean isComplete() {
+        return malformedAt == null;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public Long getMalformedAt() {
+        return malformedAt;
+    }
+
+    public String getMalformedError() {
+        return malformedError;
+    }
+
+    public static class ItemError {
+
+        private final long index;
+        private final String id;
+        private final String error;
+
+        private ItemError(final long index, final String id, final String error) {
+            this.index = index;
+            this.id = id;
+            this.error = error;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
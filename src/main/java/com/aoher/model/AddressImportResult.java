@@ -0,0 +1,93 @@
+package com.aoher.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Every rejected line is counted, but only the first
+ * {@value #MAX_REPORTED_ERRORS} by offset are reported.
+ */
+public class AddressImportResult {
+
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private long imported;
+
+    private long rejected;
+
+    private long bytes;
+
+    private long millis;
+
+    private List<LineError> errors = new ArrayList<>();
+
+    public void accept(final int count) {
+        imported += count;
+    }
+
+    public void reject(final long offset, final String error) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new LineError(offset, error));
+        }
+    }
+
+    /**
+     * Adds the counts and errors of the result of another chunk.
+     */
+    public AddressImportResult merge(final AddressImportResult other) {
+        imported += other.imported;
+        rejected += other.rejected;
+        errors.addAll(other.errors);
+        errors.sort(Comparator.comparingLong(LineError::getOffset));
+        if (errors.size() > MAX_REPORTED_ERRORS) {
+            errors = new ArrayList<>(errors.subList(0, MAX_REPORTED_ERRORS));
+        }
+        return this;
+    }
+
+    public void finish(final long bytes, final long millis) {
+        this.bytes = bytes;
+        this.millis = millis;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    public static class LineError {
+
+        private final long offset;
+        private final String error;
+
+        private LineError(final long offset, final String error) {
+            this.offset = offset;
+            this.error = error;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.aoher.service;
+
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.Address;
+import com.aoher.model.AddressBatchResult;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+import static com.aoher.metrics.ApiMetrics.Stage.CONVERSION;
+import static com.aoher.metrics.ApiMetrics.Stage.SERVICE;
+import static com.aoher.metrics.ApiMetrics.Stage.VALIDATION;
+
+/**
+ * Stores a JSON array or NDJSON stream of versioned addresses, reading one element at a time so
+ * that memory use does not grow with the size of the body. A blocking stream is parsed as it is read;
+ * a stream of buffers is fed to a non-blocking parser as the buffers arrive, and each element is
+ * collected until it is complete. A body that stops parsing ends the batch with the items before it
+ * applied, see {@link AddressBatchResult}.
+ */
+@Service
+public class AddressBatchService {
+
+    private static final String ID_FIELD = "id";
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ApiMetrics metrics;
+
+    public <T> AddressBatchResult saveAll(final InputStream body,
+                                          final VersionedAddressConverter<T> converter) throws IOException {
+        AddressBatchResult result = new AddressBatchResult();
+        long index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = objectMapper.readTree(parser);
+                save(index++, node, converter, result);
+                token = parser.nextToken();
+            }
+        } catch (JsonParseException e) {
+            result.malformed(index, e.getOriginalMessage());
+        }
+        return result;
+    }
+
+    /**
+     * {@link #saveAll(InputStream, VersionedAddressConverter)} for a body that arrives in buffers, which
+     * are released once fed. Saves run on the thread that delivers the buffers.
+     */
+    public <T> Mono<AddressBatchResult> saveAll(final Flux<DataBuffer> body,
+                                                final VersionedAddressConverter<T> converter) {
+        return Mono.using(() -> new IncrementalBatch<>(converter),
+                batch -> body.doOnNext(batch::feed)
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                        .then(Mono.fromCallable(batch::finish)),
+                IncrementalBatch::close);
+    }
+
+    private <T> void save(final long index, final JsonNode node, final VersionedAddressConverter<T> converter,
+                          final AddressBatchResult result) {
+        String id = node.path(ID_FIELD).textValue();
+        if (id == null || id.isEmpty()) {
+            result.reject(index, id, "missing id");
+            return;
+        }
+
+        T param;
+        try {
+            param = objectMapper.treeToValue(node, converter.getParamType());
+        } catch (JsonProcessingException e) {
+            result.reject(index, id, e.getOriginalMessage());
+            return;
+        }
+
+        ValidVersion version = converter.getVersion();
+        long start = System.nanoTime();
+        Set<ConstraintViolation<T>> violations = validator.validate(param);
+        metrics.recordSince(VALIDATION, version, start);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<T> violation = violations.iterator().next();
+            result.reject(index, id, violation.getPropertyPath() + " " + violation.getMessage());
+            return;
+        }
+
+        Address address;
+        try {
+            start = System.nanoTime();
+            address = converter.fromParam(param);
+            metrics.recordSince(CONVERSION, version, start);
+        } catch (IllegalArgumentException e) {
+            result.reject(index, id, e.getMessage());
+            return;
+        }
+
+        start = System.nanoTime();
+        addressService.save(id, address);
+        metrics.recordSince(SERVICE, version, start);
+        result.accept();
+    }
+
+    private final class IncrementalBatch<T> {
+
+        private final JsonParser parser;
+
+        private final ByteArrayFeeder feeder;
+
+        private final VersionedAddressConverter<T> converter;
+
+        private final AddressBatchResult result = new AddressBatchResult();
+
+        private TokenBuffer element;
+
+        private int depth;
+
+        private boolean started;
+
+        private boolean array;
+
+        private boolean ended;
+
+        private long index;
+
+        private IncrementalBatch(final VersionedAddressConverter<T> converter) throws IOException {
+            this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.converter = converter;
+        }
+
+        private void feed(final DataBuffer buffer) {
+            try {
+                if (!ended) {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    feeder.feedInput(bytes, 0, bytes.length);
+                    saveCompleteElements();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        private AddressBatchResult finish() throws IOException {
+            if (!ended) {
+                feeder.endOfInput();
+                saveCompleteElements();
+            }
+            return result;
+        }
+
+        private void saveCompleteElements() throws IOException {
+            try {
+                JsonToken token;
+                while (!ended && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                    if (!started) {
+                        started = true;
+                        array = token == JsonToken.START_ARRAY;
+                        if (array) {
+                            continue;
+                        }
+                    }
+                    if (array && depth == 0 && token == JsonToken.END_ARRAY) {
+                        // like the blocking parse, nothing after the array is read
+                        ended = true;
+                        return;
+                    }
+                    if (element == null) {
+                        element = new TokenBuffer(parser);
+                    }
+                    element.copyCurrentEvent(parser);
+                    if (token.isStructStart()) {
+                        depth++;
+                    } else if (token.isStructEnd()) {
+                        depth--;
+                    }
+                    if (depth == 0) {
+                        JsonNode node = objectMapper.readTree(element.asParser());
+                        element = null;
+                        save(index++, node, converter, result);
+                    }
+                }
+            } catch (JsonParseException e) {
+                // the rest of the body is released unread, like anything after the array
+                result.malformed(index, e.getOriginalMessage());
+                ended = true;
+            }
+        }
+
+        private void close() {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.aoher.service;
+
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pushes applied saves to subscribers as server-sent events in the shape of their version, with the
+ * epoch and revision as event id, {@code <epoch>.<revision>} as in entity tags. The last
+ * {@code address.changes.capacity} changes are kept in a ring, so a subscriber can resume after the
+ * revision in its {@code Last-Event-ID}.
+ * <p>
+ * Saves never wait for subscribers. A save claims the next position of the ring from an atomic counter
+ * while the store holds its address, so the changes of one id are logged in the order in which they
+ * became visible, and afterwards only signals the subscribers. Subscribers hold no thread: each pulls
+ * from the ring on the parallel scheduler and keeps only the latest change per address id until it is
+ * requested. Once more than {@code address.changes.max-pending} ids are waiting, or the ring has
+ * overtaken a subscriber, its changes are dropped and it gets a {@value #RESET_EVENT} event telling it
+ * to reload instead. Resuming after a revision that is no longer kept, or of another epoch whose
+ * revisions may repeat those of this one, also starts with a reset.
+ */
+@Service
+public class AddressChangeFeed {
+
+    public static final String ADDRESS_EVENT = "address";
+
+    public static final String RESET_EVENT = "reset";
+
+    private static final String NO_DATA = "{}";
+
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReferenceArray<Change> log;
+
+    private final int maxPending;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong appended = new AtomicLong();
+
+    public AddressChangeFeed(final ObjectMapper objectMapper,
+                             @Value("${address.changes.capacity:10000}") final int capacity,
+                             @Value("${address.changes.max-pending:1000}") final int maxPending) {
+        this.objectMapper = objectMapper;
+        this.log = new AtomicReferenceArray<>(capacity);
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Logs a merged save at the next position of the ring. The store calls it while it holds the slot
+     * of {@code id}; subscribers only see the change after {@link #signal}.
+     */
+    void log(final String id, final Address address) {
+        long sequence = appended.getAndIncrement();
+        Change change = new Change(sequence, id, address);
+        int index = index(sequence);
+        Change current;
+        do {
+            current = log.get(index);
+            if (current != null && current.sequence > sequence) {
+                // overtaken by a later lap of the ring already
+                return;
+            }
+        } while (!log.compareAndSet(index, current, change));
+    }
+
+    /**
+     * Tells every subscriber to pull what has been logged.
+     */
+    void signal() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.signal();
+        }
+    }
+
+    /**
+     * Changes from now on, or after the change with the event id {@code lastEventId} if it is given,
+     * with event ids in {@code epoch}.
+     */
+    public Flux<ServerSentEvent<String>> subscribe(final ValidVersion version, final String epoch,
+                                                   final String lastEventId) {
+        return Flux.create(sink -> {
+            Subscriber subscriber = new Subscriber(sink, version, epoch, appended.get());
+            if (lastEventId != null) {
+                resume(subscriber, lastEventId);
+            }
+            subscribers.add(subscriber);
+            sink.onRequest(requested -> subscriber.signal());
+            sink.onDispose(() -> {
+                subscribers.remove(subscriber);
+                subscriber.worker.dispose();
+            });
+            subscriber.signal();
+        });
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void resume(final Subscriber subscriber, final String lastEventId) {
+        long revision = parseRevision(lastEventId, subscriber.epoch);
+        long end = subscriber.cursor;
+        Change newest = null;
+        for (long position = end - 1; position >= Math.max(0, end - log.length()); position--) {
+            Change change = log.get(index(position));
+            if (change == null || change.sequence != position) {
+                continue;
+            }
+            if (change.address.getRevision() == revision) {
+                subscriber.cursor = position + 1;
+                return;
+            }
+            if (newest == null) {
+                newest = change;
+            }
+        }
+        subscriber.reset(newest);
+    }
+
+    private int index(final long sequence) {
+        return (int) (sequence % log.length());
+    }
+
+    /**
+     * The revision of an event id in {@code epoch}, or -1 for any other.
+     */
+    private static long parseRevision(final String lastEventId, final String epoch) {
+        String id = lastEventId.trim();
+        if (!id.startsWith(epoch) || id.length() <= epoch.length() || id.charAt(epoch.length()) != '.') {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final class Change {
+
+        private final long sequence;
+
+        private final String id;
+
+        private final Address address;
+
+        private final String[] data = new String[ValidVersion.values().length];
+
+        private Change(final long sequence, final String id, final Address address) {
+            this.sequence = sequence;
+            this.id = id;
+            this.address = address;
+        }
+
+        /**
+         * Encoded once per version for all subscribers; a race only encodes twice.
+         */
+        private String data(final ValidVersion version) {
+            String encoded = data[version.ordinal()];
+            if (encoded == null) {
+                StringWriter writer = new StringWriter();
+                try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+                    AddressExportService.writeObject(generator, version, id, address);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                encoded = writer.toString();
+                data[version.ordinal()] = encoded;
+            }
+            return encoded;
+        }
+    }
+
+    private final class Subscriber {
+
+        private final FluxSink<ServerSentEvent<String>> sink;
+
+        private final ValidVersion version;
+
+        private final String epoch;
+
+        private final Scheduler.Worker worker = Schedulers.parallel().createWorker();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /**
+         * Position of the next change to pull from the ring. This and the fields below are only used
+         * by {@link #drain}, or before the subscriber is first signalled.
+         */
+        private long cursor;
+
+        /**
+         * The latest undelivered change per id, in the order of the latest changes.
+         */
+        private final LinkedHashMap<String, Change> pending = new LinkedHashMap<>();
+
+        private boolean reset;
+
+        private Change resetAt;
+
+        private Subscriber(final FluxSink<ServerSentEvent<String>> sink, final ValidVersion version,
+                           final String epoch, final long cursor) {
+            this.sink = sink;
+            this.version = version;
+            this.epoch = epoch;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Moves the changes logged since the last pull into {@link #pending}, up to the first position
+         * that is not logged yet; its save signals again once it is.
+         */
+        private void pull() {
+            while (true) {
+                Change change = log.get(index(cursor));
+                if (change == null || change.sequence < cursor) {
+                    return;
+                }
+                if (change.sequence > cursor) {
+                    reset(change);
+                    cursor = change.sequence + 1;
+                    continue;
+                }
+                cursor++;
+                pending.remove(change.id);
+                pending.put(change.id, change);
+                if (pending.size() > maxPending) {
+                    reset(change);
+                }
+            }
+        }
+
+        private void reset(final Change newest) {
+            pending.clear();
+            reset = true;
+            resetAt = newest;
+        }
+
+        private void signal() {
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                pull();
+                while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                    ServerSentEvent<String> event = poll();
+                    if (event == null) {
+                        break;
+                    }
+                    sink.next(event);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private ServerSentEvent<String> poll() {
+            if (reset) {
+                reset = false;
+                ServerSentEvent.Builder<String> event = ServerSentEvent.<String>builder().event(RESET_EVENT).data(NO_DATA);
+                return resetAt == null ? event.build() : event.id(eventId(resetAt)).build();
+            }
+            Iterator<Change> changes = pending.values().iterator();
+            if (!changes.hasNext()) {
+                return null;
+            }
+            Change change = changes.next();
+            changes.remove();
+            return ServerSentEvent.<String>builder()
+                    .id(eventId(change))
+                    .event(ADDRESS_EVENT)
+                    .data(change.data(version))
+                    .build();
+        }
+
+        private String eventId(final Change change) {
+            return epoch + '.' + change.address.getRevision();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.aoher.service;
+
+import com.aoher.model.Address;
+import com.aoher.version.AddressParamV1;
+import com.aoher.version.AddressParamV2;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.aoher.converter.AddressParamConverter.convertToV1;
+import static com.aoher.converter.AddressParamConverter.convertToV2;
+
+/**
+ * Writes every stored address as one NDJSON line in the requested version shape. Lines go straight
+ * to the output stream while the store is traversed, so nothing proportional to the store is held.
+ */
+@Service
+public class AddressExportService {
+
+    private static final int LINES_PER_BUFFER = 256;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void export(final ValidVersion version, final OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            addressService.forEach((id, address) -> writeLine(generator, version, id, address));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reactive variant of {@link #export(ValidVersion, OutputStream)}. The store is traversed on
+     * demand and every buffer holds up to {@value #LINES_PER_BUFFER} lines.
+     */
+    public Flux<DataBuffer> export(final ValidVersion version, final DataBufferFactory bufferFactory) {
+        return addressService.entries()
+                .buffer(LINES_PER_BUFFER)
+                .map(entries -> write(version, entries, bufferFactory.allocateBuffer()));
+    }
+
+    private DataBuffer write(final ValidVersion version, final List<Map.Entry<String, Address>> entries,
+                             final DataBuffer buffer) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer.asOutputStream(),
+                JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            entries.forEach(entry -> writeLine(generator, version, entry.getKey(), entry.getValue()));
+            return buffer;
+        } catch (IOException e) {
+            DataBufferUtils.release(buffer);
+            throw new UncheckedIOException(e);
+        } catch (UncheckedIOException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes one NDJSON line, see {@link #writeObject}.
+     */
+    static void writeLine(final JsonGenerator generator, final ValidVersion version,
+                          final String id, final Address address) {
+        writeObject(generator, version, id, address);
+        try {
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes one address with its id in the shape of {@code version}.
+     */
+    static void writeObject(final JsonGenerator generator, final ValidVersion version,
+                            final String id, final Address address) {
+        try {
+            generator.writeStartObject();
+            generator.writeStringField("id", id);
+            if (version == ValidVersion.V1) {
+                AddressParamV1 addressParamV1 = convertToV1(address);
+                generator.writeStringField("address", addressParamV1.getAddress());
+            } else {
+                AddressParamV2 addressParamV2 = convertToV2(address);
+                generator.writeStringField("zip", addressParamV2.getZip());
+                generator.writeStringField("town", addressParamV2.getTown());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.aoher.service;
+
+import com.aoher.converter.V1AddressParser;
+import com.aoher.exception.InvalidImportException;
+import com.aoher.model.Address;
+import com.aoher.model.AddressImportResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports files of V1 lines ({@code "12043 Berlin"}, terminated by LF or CRLF). The file is split at line
+ * boundaries into chunks of about {@code address.import.chunk-bytes}, each memory-mapped and parsed on a
+ * fork-join pool of {@code address.import.parallelism} threads, and the addresses are saved in batches
+ * with {@link AddressService#saveAll}. Each line is saved under the id prefix followed by its byte offset,
+ * which is also how rejected lines are reported. The prefix defaults to {@code import-<file name>-} and
+ * must not be empty, since bare offsets would overwrite addresses saved under numeric ids.
+ */
+@Service
+public class AddressImportService {
+
+    static final String MALFORMED_LINE = "expected five digits, a space and a town";
+
+    static final String MALFORMED_UTF8 = "malformed UTF-8";
+
+    private static final int ZIP_LENGTH = 5;
+
+    private static final int ZIP_COUNT = 100_000;
+
+    private static final int BATCH_SIZE = 4096;
+
+    private static final int SCAN_SIZE = 8192;
+
+    @Autowired
+    private AddressService addressService;
+
+    private final Path directory;
+
+    private final int chunkBytes;
+
+    private final ForkJoinPool pool;
+
+    public AddressImportService(@Value("${address.import.directory:import}") final String directory,
+                                @Value("${address.import.chunk-bytes:16777216}") final int chunkBytes,
+                                @Value("${address.import.parallelism:0}") final int parallelism) {
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.chunkBytes = chunkBytes;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Imports {@code name} from {@code address.import.directory}; names resolving outside of it are refused.
+     */
+    public AddressImportResult importFromDirectory(final String name, final String idPrefix) throws IOException {
+        Path file = directory.resolve(name).normalize();
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            throw new InvalidImportException("no file " + name + " to import in " + directory);
+        }
+        return importFile(file, idPrefix);
+    }
+
+    /**
+     * Imports {@code file} with ids starting with {@code idPrefix}, or {@code import-<file name>-} if it is
+     * null.
+     */
+    public AddressImportResult importFile(final Path file, final String idPrefix) throws IOException {
+        if (idPrefix != null && idPrefix.isEmpty()) {
+            throw new InvalidImportException("empty id prefix, lines would be saved under their bare offsets");
+        }
+        String prefix = idPrefix == null ? "import-" + file.getFileName() + '-' : idPrefix;
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+            Import fileImport = new Import(channel, prefix);
+            AddressImportResult result = pool.invoke(new ImportTask(fileImport, bounds, 0, bounds.length - 1));
+            result.finish(size, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return result;
+        }
+    }
+
+    /**
+     * Chunk offsets from 0 to {@code size}, each but the last moved forward to the start of a line.
+     */
+    private long[] chunkBounds(final FileChannel channel, final long size) throws IOException {
+        long[] bounds = new long[(int) (size / chunkBytes) + 2];
+        int count = 1;
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long position = 0;
+        while (size - position > chunkBytes) {
+            position = nextLine(channel, position + chunkBytes, size, scan);
+            if (position < size) {
+                bounds[count++] = position;
+            }
+        }
+        bounds[count++] = size;
+        long[] trimmed = new long[count];
+        System.arraycopy(bounds, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+    private static long nextLine(final FileChannel channel, final long from, final long size, final ByteBuffer scan)
+            throws IOException {
+        long position = from - 1;
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static final class Import {
+
+        private final FileChannel channel;
+
+        private final String idPrefix;
+
+        /**
+         * Zip strings by value, shared by all chunks; a race only creates a string twice.
+         */
+        private final String[] zips = new String[ZIP_COUNT];
+
+        private Import(final FileChannel channel, final String idPrefix) {
+            this.channel = channel;
+            this.idPrefix = idPrefix;
+        }
+    }
+
+    /**
+     * Parses the chunks from {@code from} to {@code to} of {@code bounds}, splitting in halves down to one.
+     */
+    private final class ImportTask extends RecursiveTask<AddressImportResult> {
+
+        private final Import fileImport;
+
+        private final long[] bounds;
+
+        private final int from;
+
+        private final int to;
+
+        private ImportTask(final Import fileImport, final long[] bounds, final int from, final int to) {
+            this.fileImport = fileImport;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected AddressImportResult compute() {
+            if (to - from == 1) {
+                try {
+                    return new ChunkParser(fileImport).parse(bounds[from], bounds[to]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            int middle = (from + to) >>> 1;
+            ImportTask left = new ImportTask(fileImport, bounds, from, middle);
+            left.fork();
+            AddressImportResult right = new ImportTask(fileImport, bounds, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private final class ChunkParser {
+
+        private final Import fileImport;
+
+        private final AddressImportResult result = new AddressImportResult();
+
+        private final String[] ids = new String[BATCH_SIZE];
+
+        private final Address[] addresses = new Address[BATCH_SIZE];
+
+        private int count;
+
+        private byte[] line = new byte[256];
+
+        private CharsetDecoder decoder;
+
+        private ChunkParser(final Import fileImport) {
+            this.fileImport = fileImport;
+        }
+
+        private AddressImportResult parse(final long start, final long end) throws IOException {
+            if (start < end) {
+                MappedByteBuffer chunk = fileImport.channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                int limit = chunk.limit();
+                int lineStart = 0;
+                while (lineStart < limit) {
+                    int position = lineStart;
+                    int bits = 0;
+                    while (position < limit) {
+                        byte b = chunk.get(position);
+                        if (b == '\n') {
+                            break;
+                        }
+                        bits |= b;
+                        position++;
+                    }
+                    int lineEnd = position > lineStart && chunk.get(position - 1) == '\r' ? position - 1 : position;
+                    parseLine(chunk, lineStart, lineEnd, bits < 0, start + lineStart);
+                    lineStart = position + 1;
+                }
+                flush();
+            }
+            return result;
+        }
+
+        private void parseLine(final MappedByteBuffer chunk, final int from, final int to, final boolean nonAscii,
+                               final long offset) {
+            int length = to - from;
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            chunk.position(from);
+            chunk.get(line, 0, length);
+            if (length <= ZIP_LENGTH || line[ZIP_LENGTH] != ' ') {
+                result.reject(offset, MALFORMED_LINE);
+                return;
+            }
+            int zip = 0;
+            for (int i = 0; i < ZIP_LENGTH; i++) {
+                int digit = line[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    result.reject(offset, MALFORMED_LINE);
+                    return;
+                }
+                zip = zip * 10 + digit;
+            }
+            String town;
+            try {
+                town = nonAscii ? decodeTown(length) : asciiTown(length);
+            } catch (CharacterCodingException e) {
+                result.reject(offset, MALFORMED_UTF8);
+                return;
+            }
+            if (town == null) {
+                result.reject(offset, MALFORMED_LINE);
+                return;
+            }
+            String zipString = fileImport.zips[zip];
+            if (zipString == null) {
+                zipString = new String(line, 0, ZIP_LENGTH, StandardCharsets.ISO_8859_1);
+                fileImport.zips[zip] = zipString;
+            }
+            ids[count] = fileImport.idPrefix + offset;
+            addresses[count] = new Address(zipString, town);
+            if (++count == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * The town of an ASCII line, where CR is the only line terminator left, or {@code null} if it holds one.
+         */
+        private String asciiTown(final int length) {
+            for (int i = ZIP_LENGTH + 1; i < length; i++) {
+                if (line[i] == '\r') {
+                    return null;
+                }
+            }
+            return new String(line, ZIP_LENGTH + 1, length - ZIP_LENGTH - 1, StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * The town of a line with non-ASCII bytes, or {@code null} if it holds a line terminator.
+         */
+        private String decodeTown(final int length) throws CharacterCodingException {
+            if (decoder == null) {
+                decoder = StandardCharsets.UTF_8.newDecoder();
+            }
+            CharBuffer town = decoder.decode(ByteBuffer.wrap(line, ZIP_LENGTH + 1, length - ZIP_LENGTH - 1));
+            for (int i = 0; i < town.length(); i++) {
+                if (V1AddressParser.isLineTerminator(town.get(i))) {
+                    return null;
+                }
+            }
+            return town.toString();
+        }
+
+        private void flush() {
+            if (count > 0) {
+                addressService.saveAll(ids, addresses, count);
+                result.accept(count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.aoher.service;
+
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.exception.InvalidQueryException;
+import com.aoher.model.Address;
+import com.aoher.storage.TownMatches;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import static com.aoher.storage.CompactAddressStore.NO_POSITION;
+
+/**
+ * Answers {@link ZipQuery zip queries} from the sorted zip index of the store, either as one JSON
+ * page with a cursor to the next or as NDJSON lines in the shape of {@link AddressExportService}.
+ * Streams fetch {@value #LINES_PER_PAGE} addresses at a time and hold no lock while writing.
+ * Town completions come from the town prefix index of the store.
+ */
+@Service
+public class AddressQueryService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int LINES_PER_PAGE = 256;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Writes {@code {"items":[...],"next":"cursor"}}; {@code next} is left out on the last page.
+     */
+    public byte[] page(final ValidVersion version, final ZipQuery query, final long after, final int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidQueryException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+            long next = addressService.scanZips(query, after, limit,
+                    (id, address) -> AddressExportService.writeObject(generator, version, id, address));
+            generator.writeEndArray();
+            if (next != NO_POSITION) {
+                generator.writeStringField("next", ZipQuery.formatCursor(next));
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the towns starting with {@code prefix} that have the most addresses as a JSON array of
+     * params of {@code version}, each with the zip of the most recent save to that town.
+     */
+    public byte[] completeTown(final ValidVersion version, final String prefix, final int limit) {
+        if (limit < 1 || limit > TownMatches.MAX_SIZE) {
+            throw new InvalidQueryException("limit must be between 1 and " + TownMatches.MAX_SIZE);
+        }
+        TownMatches matches = new TownMatches(limit);
+        addressService.completeTowns(prefix, matches);
+        VersionedAddressConverter<?> converter = VersionedAddressConverter.forVersion(version);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (int i = 0; i < matches.size(); i++) {
+                generator.writeObject(converter.toParam(new Address(matches.getZip(i), matches.getTown(i))));
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void stream(final ValidVersion version, final ZipQuery query, final long after, final OutputStream out)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            long position = after;
+            do {
+                position = addressService.scanZips(query, position, LINES_PER_PAGE,
+                        (id, address) -> AddressExportService.writeLine(generator, version, id, address));
+            } while (position != NO_POSITION);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reactive variant of {@link #stream(ValidVersion, ZipQuery, long, OutputStream)} with one buffer
+     * per page, read on demand.
+     */
+    public Flux<DataBuffer> stream(final ValidVersion version, final ZipQuery query, final long after,
+                                   final DataBufferFactory bufferFactory) {
+        return Flux.generate(() -> after, (position, sink) -> {
+            DataBuffer buffer = bufferFactory.allocateBuffer();
+            long next;
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer.asOutputStream(),
+                    JsonEncoding.UTF8)) {
+                generator.setRootValueSeparator(null);
+                next = addressService.scanZips(query, position, LINES_PER_PAGE,
+                        (id, address) -> AddressExportService.writeLine(generator, version, id, address));
+            } catch (IOException e) {
+                DataBufferUtils.release(buffer);
+                throw new UncheckedIOException(e);
+            } catch (UncheckedIOException e) {
+                DataBufferUtils.release(buffer);
+                throw e;
+            }
+            if (buffer.readableByteCount() > 0) {
+                sink.next(buffer);
+            } else {
+                DataBufferUtils.release(buffer);
+            }
+            if (next == NO_POSITION) {
+                sink.complete();
+            }
+            return next;
+        });
+    }
+}
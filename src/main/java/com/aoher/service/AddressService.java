@@ -1,18 +1,468 @@
 package com.aoher.service;
 
+import com.aoher.cache.AddressResponseCache;
+import com.aoher.exception.PreconditionFailedException;
+import com.aoher.exception.WriteFailedException;
+import com.aoher.exception.WriteNotAppliedException;
 import com.aoher.model.Address;
+import com.aoher.storage.AddressJournal;
+import com.aoher.storage.AddressRepository;
+import com.aoher.storage.CompactAddressStore;
+import com.aoher.storage.TownMatches;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongPredicate;
+
+import static com.aoher.util.Constants.DEFAULT_ADDRESS_ID;
+
+/**
+ * Keeps the live addresses in a {@link CompactAddressStore}. When an {@link AddressRepository} is
+ * configured, applied saves are written to it in the background and keyed reads go to it, with
+ * concurrent reads of one id sharing a single backend call; a read returns the store's address instead
+ * while the repository does not have that revision yet. Revisions continue after the highest one the
+ * repository holds, and addresses recovered from the journal are written to it after startup. Scans
+ * and completions still use the store.
+ */
 @Service
+// recovers the journal during startup even with lazy initialization
+@Lazy(false)
 public class AddressService {
 
-    private Address address;
+    public static final String REPOSITORY_LOADS = "address.repository.loads";
+
+    public static final String REPOSITORY_PENDING = "address.repository.pending";
+
+    private static final Executor BACKEND = runnable -> Schedulers.boundedElastic().schedule(runnable);
+
+    private final AddressResponseCache responseCache;
+
+    private final AddressChangeFeed changeFeed;
+
+    /**
+     * Logs each merged save while the store still holds its slot; subscribers are signalled after.
+     */
+    private final BiConsumer<String, Address> logChange;
+
+    private final AddressJournal journal;
+
+    private final AddressWriteQueue writeQueue;
+
+    private final AddressRepository repository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final long readTimeoutMillis;
+
+    private final CompactAddressStore addresses = new CompactAddressStore();
+
+    private final AtomicLong revisions = new AtomicLong();
+
+    private String epoch;
+
+    /**
+     * Revisions of conditional saves that passed their precondition and are not applied yet, by id.
+     */
+    private final ConcurrentMap<String, Long> pendingRevisions = new ConcurrentHashMap<>();
+
+    private final SingleFlight<String, Address> repositoryLoads = new SingleFlight<>();
+
+    private RepositoryWriteBehind repositoryWrites;
+
+    /**
+     * The journal, write queue, repository and meter registry are optional; without them saves are
+     * applied at once, only kept in memory and not measured.
+     */
+    public AddressService(final AddressResponseCache responseCache,
+                          final AddressChangeFeed changeFeed,
+                          @Nullable final AddressJournal journal,
+                          @Nullable final AddressWriteQueue writeQueue,
+                          @Nullable final AddressRepository repository,
+                          @Nullable final MeterRegistry meterRegistry,
+                          @Value("${address.write.read-timeout-ms:1000}") final long readTimeoutMillis) {
+        this.responseCache = responseCache;
+        this.changeFeed = changeFeed;
+        this.logChange = changeFeed::log;
+        this.journal = journal;
+        this.writeQueue = writeQueue;
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void recover() {
+        // without a journal revisions of an earlier boot may be drawn again, so its tags must not match
+        epoch = journal == null ? Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) : "0";
+        if (repository != null) {
+            repositoryWrites = new RepositoryWriteBehind(repository, BACKEND, repositoryLoads::forget);
+            // the backend drops saves below what it holds, so new revisions have to start above that
+            revisions.accumulateAndGet(repository.maxRevision(), Math::max);
+        }
+        if (journal != null) {
+            journal.recover(this::restore, addresses::forEach);
+            if (repositoryWrites != null) {
+                repositoryWrites.seed(addresses::forEach);
+            }
+        }
+        if (writeQueue != null) {
+            writeQueue.start(this::write);
+        }
+        if (repository != null && meterRegistry != null) {
+            FunctionCounter.builder(REPOSITORY_LOADS, repositoryLoads, SingleFlight::getLoads)
+                    .tag("outcome", "backend")
+                    .register(meterRegistry);
+            FunctionCounter.builder(REPOSITORY_LOADS, repositoryLoads, SingleFlight::getCoalesced)
+                    .tag("outcome", "coalesced")
+                    .register(meterRegistry);
+            Gauge.builder(REPOSITORY_PENDING, repositoryWrites, RepositoryWriteBehind::pending).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+    }
+
+    /**
+     * Identifies the sequence that revisions are drawn from: the boot time without a journal, since
+     * revisions then start over on every boot, or after the repository's highest one, which may lack the
+     * last saves, and {@code 0} with a journal, which keeps them across restarts.
+     */
+    public String getEpoch() {
+        return epoch;
+    }
 
     public Address load() {
-        return address;
+        return load(DEFAULT_ADDRESS_ID);
+    }
+
+    public Address load(final String id) {
+        return repository == null ? addresses.get(id) : current(id, repositoryLoads.get(id, repository::find));
+    }
+
+    /**
+     * Waits until the save that returned {@code token}, or a later one to the same id, is visible, and
+     * throws {@link WriteFailedException} if it was queued and its batch failed.
+     */
+    public Address load(final String id, final long token) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+        while (true) {
+            CompletableFuture<Void> batch = writeQueue == null ? null : writeQueue.nextBatch();
+            Address address = load(id);
+            if (applied(address, token)) {
+                return address;
+            }
+            if (batch != null && writeQueue.failed(id, token)) {
+                throw new WriteFailedException(id, token);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (batch == null || remaining <= 0) {
+                throw new WriteNotAppliedException(id, token);
+            }
+            try {
+                batch.get(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WriteNotAppliedException(id, token);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new WriteNotAppliedException(id, token);
+            }
+        }
+    }
+
+    public long save(final Address address) {
+        return save(DEFAULT_ADDRESS_ID, address);
+    }
+
+    public long save(final String id, final Address address) {
+        Address stored = address.withRevision(revisions.incrementAndGet());
+        if (journal == null) {
+            apply(id, stored);
+        } else {
+            journal.append(id, stored, () -> apply(id, stored));
+        }
+        return stored.getRevision();
+    }
+
+    /**
+     * Saves the first {@code count} addresses at once, replacing each with its stored revision, for bulk
+     * imports. Revisions are claimed in one step and, without a journal, subscribers of the change feed
+     * are signalled once for the chunk. Never queued; returns once every address is visible.
+     */
+    public void saveAll(final String[] ids, final Address[] batch, final int count) {
+        long first = revisions.getAndAdd(count) + 1;
+        for (int i = 0; i < count; i++) {
+            batch[i] = batch[i].withRevision(first + i);
+        }
+        if (journal == null) {
+            for (int i = 0; i < count; i++) {
+                if (addresses.merge(ids[i], batch[i], logChange)) {
+                    afterApply(ids[i], batch[i]);
+                }
+            }
+            changeFeed.signal();
+            return;
+        }
+        CompletableFuture<?>[] appends = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            String id = ids[i];
+            Address address = batch[i];
+            appends[i] = journal.appendAsync(id, address, () -> apply(id, address));
+        }
+        CompletableFuture.allOf(appends).join();
+    }
+
+    /**
+     * Saves {@code address} if {@code precondition} accepts the current revision of {@code id}, 0 if
+     * there is none, and throws {@link PreconditionFailedException} otherwise. The check and the claim
+     * of a new revision are atomic per id; a conditional save that is still being written counts as
+     * current, so of two saves expecting the same revision only one succeeds.
+     */
+    public long save(final String id, final Address address, final LongPredicate precondition) {
+        Address stored = claim(id, address, precondition);
+        try {
+            if (journal == null) {
+                apply(id, stored);
+            } else {
+                journal.append(id, stored, () -> apply(id, stored));
+            }
+        } finally {
+            pendingRevisions.remove(id, stored.getRevision());
+        }
+        return stored.getRevision();
+    }
+
+    /**
+     * Saves on behalf of a client: queued when {@code address.write.async} is on, applied before
+     * returning otherwise. Returns the revision as a token for {@link #load(String, long)}.
+     */
+    public long submit(final String id, final Address address) {
+        if (writeQueue == null) {
+            return save(id, address);
+        }
+        Address stored = address.withRevision(revisions.incrementAndGet());
+        writeQueue.offer(id, stored);
+        return stored.getRevision();
+    }
+
+    /**
+     * {@link #submit(String, Address)} with an optional precondition. Conditional saves are never
+     * queued, since they have to be checked against the applied revision.
+     */
+    public long submit(final String id, final Address address, final LongPredicate precondition) {
+        return precondition == null ? submit(id, address) : save(id, address, precondition);
+    }
+
+    public void forEach(final BiConsumer<String, Address> action) {
+        addresses.forEach(action);
+    }
+
+    /**
+     * See {@link CompactAddressStore#scanZips}.
+     */
+    public long scanZips(final ZipQuery query, final long after, final int limit,
+                         final BiConsumer<String, Address> action) {
+        return addresses.scanZips(query.getFrom(), query.getTo(), after, limit, action);
+    }
+
+    /**
+     * See {@link CompactAddressStore#completeTowns}.
+     */
+    public void completeTowns(final CharSequence prefix, final TownMatches matches) {
+        addresses.completeTowns(prefix, matches);
+    }
+
+    /**
+     * Non-blocking {@link #load(String)}. Backend calls run on the bounded elastic scheduler; the shared
+     * future is copied so that a cancelled read cannot cancel it for everyone else.
+     */
+    public Mono<Address> find(final String id) {
+        if (repository == null) {
+            return Mono.fromSupplier(() -> addresses.get(id));
+        }
+        return Mono.defer(() -> Mono.fromFuture(repositoryLoads.load(id, repository::find, BACKEND).copy()))
+                .map(loaded -> current(id, loaded))
+                .switchIfEmpty(Mono.fromSupplier(() -> addresses.get(id)));
+    }
+
+    /**
+     * Backend calls made by keyed reads, 0 without a repository.
+     */
+    public long getRepositoryLoads() {
+        return repositoryLoads.getLoads();
+    }
+
+    /**
+     * Keyed reads that shared a backend call already in flight.
+     */
+    public long getCoalescedLoads() {
+        return repositoryLoads.getCoalesced();
+    }
+
+    /**
+     * Applied saves not written to the repository yet, 0 without a repository.
+     */
+    public int getPendingRepositoryWrites() {
+        return repositoryWrites == null ? 0 : repositoryWrites.pending();
+    }
+
+    /**
+     * Non-blocking {@link #load(String, long)}. The batch future is copied so that a cancelled read
+     * cannot cancel it for everyone else.
+     */
+    public Mono<Address> find(final String id, final long token) {
+        return Mono.defer(() -> {
+            CompletableFuture<Void> batch = writeQueue == null ? null : writeQueue.nextBatch();
+            return find(id)
+                    .filter(address -> applied(address, token))
+                    .switchIfEmpty(Mono.defer(() -> batch == null
+                            ? Mono.error(new WriteNotAppliedException(id, token))
+                            : writeQueue.failed(id, token)
+                            ? Mono.error(new WriteFailedException(id, token))
+                            : Mono.fromFuture(batch.copy())
+                                    .publishOn(Schedulers.parallel())
+                                    .then(Mono.empty())));
+        }).repeatWhenEmpty(repeats -> repeats)
+                .timeout(Duration.ofMillis(readTimeoutMillis), Mono.error(() -> new WriteNotAppliedException(id, token)));
+    }
+
+    /**
+     * Non-blocking {@link #submit}. With a journal and no write queue the result completes once the
+     * record is durable, and is moved off the journal thread so it can go on with the next group commit.
+     */
+    public Mono<Long> store(final String id, final Address address) {
+        return Mono.defer(() -> {
+            if (writeQueue != null) {
+                return Mono.just(submit(id, address));
+            }
+            Address stored = address.withRevision(revisions.incrementAndGet());
+            if (journal == null) {
+                apply(id, stored);
+                return Mono.just(stored.getRevision());
+            }
+            return Mono.fromFuture(journal.appendAsync(id, stored, () -> apply(id, stored)))
+                    .publishOn(Schedulers.parallel())
+                    .thenReturn(stored.getRevision());
+        });
+    }
+
+    /**
+     * Non-blocking {@link #submit(String, Address, LongPredicate)}.
+     */
+    public Mono<Long> store(final String id, final Address address, final LongPredicate precondition) {
+        if (precondition == null) {
+            return store(id, address);
+        }
+        return Mono.defer(() -> {
+            Address stored = claim(id, address, precondition);
+            if (journal == null) {
+                try {
+                    apply(id, stored);
+                } finally {
+                    pendingRevisions.remove(id, stored.getRevision());
+                }
+                return Mono.just(stored.getRevision());
+            }
+            CompletableFuture<Void> append;
+            try {
+                append = journal.appendAsync(id, stored, () -> apply(id, stored));
+            } catch (RuntimeException e) {
+                pendingRevisions.remove(id, stored.getRevision());
+                throw e;
+            }
+            return Mono.fromFuture(append.whenComplete(
+                    (ignored, e) -> pendingRevisions.remove(id, stored.getRevision())))
+                    .publishOn(Schedulers.parallel())
+                    .thenReturn(stored.getRevision());
+        });
+    }
+
+    public Flux<Map.Entry<String, Address>> entries() {
+        return Flux.fromIterable(addresses.ids())
+                .map(id -> new AbstractMap.SimpleImmutableEntry<>(id, addresses.get(id)));
+    }
+
+    private void write(final Map<String, Address> batch) throws Exception {
+        if (journal == null) {
+            batch.forEach(this::apply);
+            return;
+        }
+        // one group commit for the whole batch
+        CompletableFuture<?>[] appends = new CompletableFuture<?>[batch.size()];
+        int i = 0;
+        for (Map.Entry<String, Address> entry : batch.entrySet()) {
+            String id = entry.getKey();
+            Address address = entry.getValue();
+            appends[i++] = journal.appendAsync(id, address, () -> apply(id, address));
+        }
+        CompletableFuture.allOf(appends).get();
+    }
+
+    private Address claim(final String id, final Address address, final LongPredicate precondition) {
+        long revision = pendingRevisions.compute(id, (key, pending) -> {
+            long applied = addresses.revisionOf(key);
+            if (!precondition.test(pending == null ? applied : Math.max(pending, applied))) {
+                throw new PreconditionFailedException(key);
+            }
+            return revisions.incrementAndGet();
+        });
+        return address.withRevision(revision);
+    }
+
+    private void apply(final String id, final Address address) {
+        if (addresses.merge(id, address, logChange)) {
+            changeFeed.signal();
+            afterApply(id, address);
+        }
+    }
+
+    private void afterApply(final String id, final Address address) {
+        if (repositoryWrites != null) {
+            repositoryWrites.write(id, address);
+        }
+        responseCache.invalidate(id);
+    }
+
+    private void restore(final String id, final Address address) {
+        addresses.merge(id, address);
+        revisions.accumulateAndGet(address.getRevision(), Math::max);
+    }
+
+    /**
+     * {@code loaded} from the repository, or the store's address of {@code id} if that is a later revision
+     * the repository does not have yet.
+     */
+    private Address current(final String id, final Address loaded) {
+        long applied = addresses.revisionOf(id);
+        return applied > (loaded == null ? 0 : loaded.getRevision()) ? addresses.get(id) : loaded;
     }
 
-    public void save(final Address address) {
-        this.address = address;
+    private static boolean applied(final Address address, final long token) {
+        return address != null && address.getRevision() >= token;
     }
 }
@@ -0,0 +1,214 @@
+package com.aoher.service;
+
+import com.aoher.exception.WriteQueueClosedException;
+import com.aoher.exception.WriteQueueFullException;
+import com.aoher.model.Address;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of saves drained by a single writer thread. {@link #start} must be called once
+ * before the first {@link #offer}.
+ * <p>
+ * Producers reserve a slot with a CAS on the size counter and never block: a full queue rejects the
+ * save. The writer takes up to {@code address.write.max-batch} saves at a time, keeps only the highest
+ * revision per id and hands the rest to the {@link BatchWriter} in one call. Waiters for a save obtain
+ * {@link #nextBatch()} before checking the store, so a batch that lands in between still wakes them.
+ * A batch that fails is not retried; its revisions are reported by {@link #failed} until a later save
+ * to the same id is applied.
+ */
+@Component
+@ConditionalOnProperty(name = "address.write.async", havingValue = "true")
+public class AddressWriteQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddressWriteQueue.class);
+
+    /**
+     * Applies one coalesced batch and returns once every address in it is visible to readers.
+     */
+    public interface BatchWriter {
+
+        void write(Map<String, Address> batch) throws Exception;
+    }
+
+    private final int capacity;
+
+    private final int maxBatch;
+
+    private final Queue<PendingSave> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    private final AtomicReference<CompletableFuture<Void>> nextBatch =
+            new AtomicReference<>(new CompletableFuture<>());
+
+    /**
+     * The highest revision per id of the batches that failed.
+     */
+    private final ConcurrentMap<String, Long> failedRevisions = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private BatchWriter batchWriter;
+
+    private Thread writer;
+
+    public AddressWriteQueue(final MeterRegistry registry,
+                             @Value("${address.write.capacity:10000}") final int capacity,
+                             @Value("${address.write.max-batch:512}") final int maxBatch) {
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        Gauge.builder("address.write.queue", size, AtomicInteger::get).register(registry);
+    }
+
+    public synchronized void start(final BatchWriter batchWriter) {
+        if (writer != null) {
+            throw new IllegalStateException("write queue already started");
+        }
+        this.batchWriter = batchWriter;
+        writer = new Thread(this::writeLoop, "address-write-queue");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a save whose address already carries its revision, or throws if the queue is full or closed.
+     */
+    public void offer(final String id, final Address address) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                throw new WriteQueueFullException(capacity);
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        // checked after reserving, so the writer never stops while this save is on its way in
+        if (closed) {
+            size.decrementAndGet();
+            throw new WriteQueueClosedException();
+        }
+        queue.add(new PendingSave(id, address));
+        if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Completes on the writer thread once the batch being written now, or the next one if none is, has
+     * been applied or has failed. A save that is not visible when checked after this call is in that
+     * batch or a later one.
+     */
+    public CompletableFuture<Void> nextBatch() {
+        return nextBatch.get();
+    }
+
+    /**
+     * Whether a batch that failed held a save to {@code id} with revision {@code token} or later, and no
+     * later save to that id has been applied since. Callers check first that the save is not visible.
+     */
+    public boolean failed(final String id, final long token) {
+        Long failed = failedRevisions.get(id);
+        return failed != null && failed >= token;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Rejects further saves and waits until the queued ones are applied.
+     */
+    public void close() throws InterruptedException {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = writer;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+        }
+    }
+
+    private void writeLoop() {
+        Map<String, Address> batch = new LinkedHashMap<>();
+        while (true) {
+            int taken = drain(batch);
+            if (taken == 0) {
+                if (closed) {
+                    // a producer that reserved a slot before the close is still adding its save
+                    if (size.get() == 0) {
+                        return;
+                    }
+                    Thread.onSpinWait();
+                    continue;
+                }
+                idle.set(true);
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                idle.set(false);
+                continue;
+            }
+
+            try {
+                batchWriter.write(batch);
+                if (!failedRevisions.isEmpty()) {
+                    batch.forEach((id, address) -> failedRevisions.computeIfPresent(id,
+                            (key, failed) -> failed <= address.getRevision() ? null : failed));
+                }
+            } catch (Exception e) {
+                LOG.error("failed to write batch of {} addresses", batch.size(), e);
+                batch.forEach((id, address) -> failedRevisions.merge(id, address.getRevision(), Math::max));
+            }
+            batch.clear();
+            size.addAndGet(-taken);
+            // swapped only now, so that waiters that came in during the write are woken by this batch
+            nextBatch.getAndSet(new CompletableFuture<>()).complete(null);
+        }
+    }
+
+    private int drain(final Map<String, Address> batch) {
+        int taken = 0;
+        PendingSave save;
+        while (taken < maxBatch && (save = queue.poll()) != null) {
+            batch.merge(save.id, save.address, AddressWriteQueue::newer);
+            taken++;
+        }
+        return taken;
+    }
+
+    private static Address newer(final Address current, final Address candidate) {
+        return candidate.getRevision() > current.getRevision() ? candidate : current;
+    }
+
+    private static final class PendingSave {
+
+        private final String id;
+        private final Address address;
+
+        private PendingSave(final String id, final Address address) {
+            this.id = id;
+            this.address = address;
+        }
+    }
+}
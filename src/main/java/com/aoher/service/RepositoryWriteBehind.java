@@ -0,0 +1,130 @@
+package com.aoher.service;
+
+import com.aoher.model.Address;
+import com.aoher.storage.AddressRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Writes applied saves to an {@link AddressRepository} off the apply path. Saves are kept per id, the
+ * latest revision winning, and written by one flush at a time on {@code executor}, up to
+ * {@value #MAX_BATCH} per {@link AddressRepository#saveAll} call. A failed batch is put back and
+ * retried after {@value #RETRY_MILLIS} ms, so a save is only dropped if a later one of the same id
+ * replaces it.
+ */
+final class RepositoryWriteBehind {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepositoryWriteBehind.class);
+
+    static final int MAX_BATCH = 512;
+
+    private static final long RETRY_MILLIS = 1000;
+
+    private final AddressRepository repository;
+
+    private final Executor executor;
+
+    private final Consumer<String> saved;
+
+    private final ConcurrentMap<String, Address> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private volatile int writing;
+
+    /**
+     * @param saved called with every id once its save has reached the repository
+     */
+    RepositoryWriteBehind(final AddressRepository repository, final Executor executor, final Consumer<String> saved) {
+        this.repository = repository;
+        this.executor = executor;
+        this.saved = saved;
+    }
+
+    void write(final String id, final Address address) {
+        pending.merge(id, address, RepositoryWriteBehind::newer);
+        schedule();
+    }
+
+    /**
+     * Writes everything {@code source} passes on, in batches on {@code executor}, for a repository that
+     * may have missed saves, such as those recovered from a journal. Concurrent saves of the same ids
+     * are safe, since the repository keeps the highest revision.
+     */
+    void seed(final Consumer<BiConsumer<String, Address>> source) {
+        executor.execute(() -> {
+            Map<String, Address> batch = new LinkedHashMap<>();
+            try {
+                source.accept((id, address) -> {
+                    batch.put(id, address);
+                    if (batch.size() == MAX_BATCH) {
+                        repository.saveAll(batch);
+                        batch.clear();
+                    }
+                });
+                repository.saveAll(batch);
+            } catch (RuntimeException e) {
+                LOG.error("seeding the repository failed", e);
+            }
+        });
+    }
+
+    /**
+     * Saves not written to the repository yet, including those being written now.
+     */
+    int pending() {
+        return pending.size() + writing;
+    }
+
+    private void schedule() {
+        if (!pending.isEmpty() && flushing.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    private void flush() {
+        Map<String, Address> batch = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, Address>> entries = pending.entrySet().iterator();
+             entries.hasNext() && batch.size() < MAX_BATCH; ) {
+            Map.Entry<String, Address> entry = entries.next();
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        writing = batch.size();
+        try {
+            repository.saveAll(batch);
+        } catch (RuntimeException e) {
+            writing = 0;
+            LOG.error("writing {} addresses to the repository failed, retrying in {} ms", batch.size(), RETRY_MILLIS, e);
+            batch.forEach((id, address) -> pending.merge(id, address, RepositoryWriteBehind::newer));
+            Schedulers.boundedElastic().schedule(this::retry, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        batch.keySet().forEach(saved);
+        writing = 0;
+        flushing.set(false);
+        schedule();
+    }
+
+    private void retry() {
+        flushing.set(false);
+        schedule();
+    }
+
+    private static Address newer(final Address current, final Address candidate) {
+        return candidate.getRevision() > current.getRevision() ? candidate : current;
+    }
+}
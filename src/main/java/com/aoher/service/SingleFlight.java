@@ -0,0 +1,83 @@
+package com.aoher.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collapses concurrent loads of the same key into one call of the loader, whose result every caller
+ * shares. A key is only in flight while its load runs, so nothing is cached.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Joins the load of {@code key} in flight or starts one on {@code executor}.
+     */
+    CompletableFuture<V> load(final K key, final Function<? super K, ? extends V> loader, final Executor executor) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        loads.increment();
+        try {
+            executor.execute(() -> run(key, loader, flight));
+        } catch (RuntimeException e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight;
+    }
+
+    /**
+     * {@link #load} on the calling thread, or waiting for the load in flight.
+     */
+    V get(final K key, final Function<? super K, ? extends V> loader) {
+        try {
+            return load(key, loader, Runnable::run).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Lets later loads of {@code key} start a new call instead of joining the one in flight, which may
+     * have read the backend before a save.
+     */
+    void forget(final K key) {
+        flights.remove(key);
+    }
+
+    long getLoads() {
+        return loads.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    private void run(final K key, final Function<? super K, ? extends V> loader, final CompletableFuture<V> flight) {
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (Throwable e) {
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            return;
+        }
+        // leave the map first, so no caller joins a flight that has already landed
+        flights.remove(key, flight);
+        flight.complete(value);
+    }
+}
@@ -0,0 +1,87 @@
+package com.aoher.service;
+
+import com.aoher.exception.InvalidQueryException;
+import com.aoher.storage.CompactAddressStore;
+
+/**
+ * An inclusive range of five-digit zips, given either as a prefix of up to five digits or as
+ * {@code from} and {@code to} bounds, each defaulting to the end of the zip space. Cursors are the
+ * store positions of {@link CompactAddressStore#scanZips} in base 36.
+ */
+public final class ZipQuery {
+
+    private static final int ZIP_LENGTH = 5;
+
+    private static final int MAX_ZIP = 99_999;
+
+    private final int from;
+
+    private final int to;
+
+    private ZipQuery(final int from, final int to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public static ZipQuery of(final String prefix, final String from, final String to) {
+        if (prefix != null) {
+            if (from != null || to != null) {
+                throw new InvalidQueryException("a zip query takes either a prefix or from and to");
+            }
+            int scale = 1;
+            for (int i = prefix.length(); i < ZIP_LENGTH; i++) {
+                scale *= 10;
+            }
+            int first = digits(prefix, "prefix", prefix.length() <= ZIP_LENGTH) * scale;
+            return new ZipQuery(first, first + scale - 1);
+        }
+        int first = from == null ? 0 : digits(from, "from", from.length() == ZIP_LENGTH);
+        int last = to == null ? MAX_ZIP : digits(to, "to", to.length() == ZIP_LENGTH);
+        if (first > last) {
+            throw new InvalidQueryException("zip range from " + from + " to " + to + " is empty");
+        }
+        return new ZipQuery(first, last);
+    }
+
+    public static long parseCursor(final String cursor) {
+        if (cursor == null) {
+            return CompactAddressStore.NO_POSITION;
+        }
+        try {
+            long position = Long.parseLong(cursor, Character.MAX_RADIX);
+            if (position >= 0) {
+                return position;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new InvalidQueryException("malformed cursor " + cursor);
+    }
+
+    public static String formatCursor(final long position) {
+        return position == CompactAddressStore.NO_POSITION ? null : Long.toString(position, Character.MAX_RADIX);
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    private static int digits(final String value, final String name, final boolean validLength) {
+        if (!validLength) {
+            throw new InvalidQueryException("zip " + name + " '" + value + "' has the wrong length");
+        }
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new InvalidQueryException("zip " + name + " '" + value + "' is not a number");
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package com.aoher.startup;
+
+import com.aoher.model.AddressImportResult;
+import com.aoher.service.AddressImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Imports {@code address.import.file} once the application has started, see {@link AddressImportService}.
+ */
+@Component
+@ConditionalOnProperty(name = "address.import.file")
+public class AddressImportRunner implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddressImportRunner.class);
+
+    @Autowired
+    private AddressImportService importService;
+
+    @Value("${address.import.file}")
+    private String file;
+
+    @Value("${address.import.id-prefix:#{null}}")
+    private String idPrefix;
+
+    @Override
+    public void run(final ApplicationArguments args) throws Exception {
+        AddressImportResult result = importService.importFile(Paths.get(file), idPrefix);
+        LOG.info("Imported {} addresses from {} ({} bytes) in {} ms, rejected {} lines",
+                result.getImported(), file, result.getBytes(), result.getMillis(), result.getRejected());
+        for (AddressImportResult.LineError error : result.getErrors()) {
+            LOG.warn("Rejected line at offset {} of {}: {}", error.getOffset(), file, error.getError());
+        }
+    }
+}
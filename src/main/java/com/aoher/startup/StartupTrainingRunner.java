@@ -0,0 +1,63 @@
+package com.aoher.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Training run for the AppCDS archive of the fast-startup profile: once started, the application
+ * serves each kind of versioned request to itself, so their classes are loaded and archived, and
+ * exits. Enabled with {@code startup.training-run=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "startup.training-run", havingValue = "true")
+public class StartupTrainingRunner implements ApplicationRunner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupTrainingRunner.class);
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Value("${local.server.port}")
+    private int port;
+
+    @Override
+    public void run(final ApplicationArguments args) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://localhost:" + port;
+        HttpRequest[] requests = {
+                HttpRequest.newBuilder(URI.create(base + "/apiurl/V1/hello")).build(),
+                HttpRequest.newBuilder(URI.create(base + "/apiurl/V2/address/training"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("zip=12043&town=Berlin"))
+                        .build(),
+                HttpRequest.newBuilder(URI.create(base + "/apiurl/V1/address/training"))
+                        .header("Accept", "application/json")
+                        .build(),
+                HttpRequest.newBuilder(URI.create(base + "/apiheader/address/training"))
+                        .header("Accept", "application/json")
+                        .header("X-API-Version", "V2")
+                        .build(),
+                HttpRequest.newBuilder(URI.create(base + "/apiaccept/address/training"))
+                        .header("Accept", "application/vnd.company.app-V1+json")
+                        .build()
+        };
+        for (HttpRequest request : requests) {
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            LOG.info("Training request {} {} returned {}", request.method(), request.uri().getPath(), status);
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,31 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Durable log of address saves. {@link #recover} must be called once before the first {@link #append}.
+ */
+public interface AddressJournal {
+
+    /**
+     * Replays every durable record into {@code consumer}, possibly more than once per id, and opens the
+     * journal for appends. {@code storeSource} walks the live store whenever the journal compacts.
+     */
+    void recover(BiConsumer<String, Address> consumer, Consumer<BiConsumer<String, Address>> storeSource);
+
+    /**
+     * Blocks until the record is durable and {@code apply} has run. Records are applied in log order,
+     * by a single thread, after they have been forced to disk.
+     */
+    void append(String id, Address address, Runnable apply);
+
+    /**
+     * Like {@link #append} but returns at once; the future completes on the journal thread after
+     * {@code apply} has run.
+     */
+    CompletableFuture<Void> appendAsync(String id, Address address, Runnable apply);
+}
@@ -0,0 +1,36 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+
+import java.util.Map;
+
+/**
+ * Backend that keyed reads go to when one is configured. Calls may block for as long as the backend
+ * takes; {@link com.aoher.service.AddressService} collapses concurrent finds of the same id into one.
+ */
+public interface AddressRepository {
+
+    /**
+     * The address stored for {@code id}, or {@code null} if there is none.
+     */
+    Address find(String id);
+
+    /**
+     * Stores {@code address} unless the backend already holds the same or a later revision for
+     * {@code id}; saves of one id may arrive out of order.
+     */
+    void save(String id, Address address);
+
+    /**
+     * The highest revision the backend holds for any id, or 0 if it holds none. Read once at startup,
+     * so that revisions drawn after a restart follow those the backend already has.
+     */
+    long maxRevision();
+
+    /**
+     * {@link #save} for every entry of {@code batch}, in one call where the backend supports it.
+     */
+    default void saveAll(final Map<String, Address> batch) {
+        batch.forEach(this::save);
+    }
+}
@@ -0,0 +1,595 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Live addresses in primitive columns indexed by a slot per id: the zip as an {@code int}, the town as
+ * an index into a dictionary of distinct strings and the revision as a {@code long}. Zips that are not
+ * five ASCII digits go into the dictionary too. {@link Address} objects are only created by {@link #get}.
+ * <p>
+ * The columns are split into pages that never move once allocated, and every slot belongs to one of
+ * {@value #STRIPES} lock stripes. Writers take the write lock of their slot's stripe, readers read a
+ * slot optimistically and fall back to its read lock if a write interfered, so a reader never combines
+ * the zip of one save with the town of another and saves of different ids seldom wait for each other.
+ * The dictionary is a concurrent map over paged strings; strings stay in it for the lifetime of the
+ * store.
+ * <p>
+ * Five-digit zips are also indexed: one bucket of ascending slots per zip, guarded by one of
+ * {@value #ZIP_STRIPES} monitors, and a bit set of the zips in use. {@link #scanZips} therefore reads
+ * only matching slots plus one bit per zip in the range. Changes of town counts are queued by writers
+ * and applied to the {@link TownIndex} by whichever thread holds its lock next, so a save never waits
+ * for a completion.
+ */
+public class CompactAddressStore {
+
+    private static final int PAGE_SHIFT = 10;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int STRIPES = 64;
+
+    private static final int ZIP_STRIPES = 64;
+
+    private static final int ZIP_LENGTH = 5;
+
+    private static final int NULL = -1;
+
+    private static final int ZIP_KEYS = 100_000;
+
+    /**
+     * Position before the first match of a zip scan, and the result of a scan that reached the end.
+     */
+    public static final long NO_POSITION = -1;
+
+    private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Integer> dictionaryIds = new ConcurrentHashMap<>();
+
+    private final StampedLock[] locks = new StampedLock[STRIPES];
+
+    private final Object[] zipLocks = new Object[ZIP_STRIPES];
+
+    private final Object growLock = new Object();
+
+    private volatile Page[] pages = {new Page()};
+
+    private volatile String[][] dictionary = {new String[PAGE_SIZE]};
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicInteger dictionarySize = new AtomicInteger();
+
+    private final int[][] zipSlots = new int[ZIP_KEYS][];
+
+    private final int[] zipSlotCounts = new int[ZIP_KEYS];
+
+    private final AtomicLongArray zipsInUse = new AtomicLongArray((ZIP_KEYS + Long.SIZE - 1) / Long.SIZE);
+
+    private final TownIndex townIndex = new TownIndex();
+
+    private final ReentrantLock townLock = new ReentrantLock();
+
+    private final Queue<TownUpdate> townUpdates = new ConcurrentLinkedQueue<>();
+
+    public CompactAddressStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+        for (int i = 0; i < ZIP_STRIPES; i++) {
+            zipLocks[i] = new Object();
+        }
+    }
+
+    public Address get(final String id) {
+        Integer slot = slots.get(id);
+        return slot == null ? null : read(slot).toAddress();
+    }
+
+    /**
+     * The revision stored for {@code id}, or 0 if there is none. Does not take a lock unless a write
+     * interferes.
+     */
+    public long revisionOf(final String id) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            return 0;
+        }
+        StampedLock lock = lockOf(slot);
+        long[] revisions = page(slot).revisions;
+        int index = slot & PAGE_MASK;
+        long stamp = lock.tryOptimisticRead();
+        long revision = revisions[index];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                revision = revisions[index];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return revision;
+    }
+
+    /**
+     * Stores {@code address} unless the id already holds the same or a later revision. Only the lock
+     * stripe of the id's slot is held while the slot is written.
+     */
+    public boolean merge(final String id, final Address address) {
+        return merge(id, address, (key, merged) -> { });
+    }
+
+    /**
+     * Like {@link #merge(String, Address)}, passing a stored address to {@code onMerged} while the slot
+     * is still held, so it sees the saves of one id in the order in which they become visible.
+     */
+    public boolean merge(final String id, final Address address, final BiConsumer<String, Address> onMerged) {
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            int[] inserted = {NULL};
+            slot = slots.computeIfAbsent(id, key -> {
+                int allocated = allocate();
+                StampedLock lock = lockOf(allocated);
+                long stamp = lock.writeLock();
+                try {
+                    write(allocated, key, address, true);
+                    onMerged.accept(key, address);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                inserted[0] = allocated;
+                return allocated;
+            });
+            if (inserted[0] == slot) {
+                applyTownUpdates();
+                return true;
+            }
+        }
+
+        StampedLock lock = lockOf(slot);
+        long stamp = lock.writeLock();
+        try {
+            if (page(slot).revisions[slot & PAGE_MASK] >= address.getRevision()) {
+                return false;
+            }
+            write(slot, id, address, false);
+            onMerged.accept(id, address);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        applyTownUpdates();
+        return true;
+    }
+
+    /**
+     * Passes up to {@code limit} addresses whose zip is five digits in {@code [fromZip, toZip]} to
+     * {@code action}, ordered by zip and then by slot, starting after the position {@code after} that
+     * an earlier scan returned. Returns the position of the last address passed if more may follow,
+     * otherwise {@link #NO_POSITION}. Addresses whose zip changes during or between scans may be skipped
+     * or passed twice; {@code action} runs after every lock is released.
+     */
+    public long scanZips(final int fromZip, final int toZip, final long after, final int limit,
+                         final BiConsumer<String, Address> action) {
+        Slot[] page = new Slot[limit];
+        int[] chunk = new int[limit + 1];
+        int count = 0;
+        long last = NO_POSITION;
+        boolean more = false;
+        int afterZip = after == NO_POSITION ? NULL : (int) (after >>> 32);
+        scan:
+        for (int zip = nextZipInUse(Math.max(fromZip, Math.max(afterZip, 0)));
+             zip >= 0 && zip <= toZip; zip = nextZipInUse(zip + 1)) {
+            int from = zip == afterZip ? (int) after + 1 : 0;
+            while (true) {
+                int wanted = limit - count + 1;
+                int copied = copyBucket(zip, from, chunk, wanted);
+                for (int i = 0; i < copied; i++) {
+                    Slot read = read(chunk[i]);
+                    if (read.zip != zip) {
+                        // moved to another zip since the bucket was copied
+                        continue;
+                    }
+                    if (count == limit) {
+                        more = true;
+                        break scan;
+                    }
+                    page[count++] = read;
+                    last = (long) zip << 32 | chunk[i];
+                }
+                if (copied < wanted) {
+                    break;
+                }
+                from = chunk[copied - 1] + 1;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            action.accept(page[i].id, page[i].toAddress());
+        }
+        return more ? last : NO_POSITION;
+    }
+
+    /**
+     * Fills {@code matches} with the towns starting with {@code prefix}, ignoring case and accents,
+     * that have the most addresses. Applies the town counts queued by writers first; allocates nothing.
+     */
+    public void completeTowns(final CharSequence prefix, final TownMatches matches) {
+        townLock.lock();
+        try {
+            drainTownUpdates();
+            int found = townIndex.complete(prefix, matches.townIds);
+            for (int i = 0; i < found; i++) {
+                int town = matches.townIds[i];
+                int zip = townIndex.zipOf(town);
+                matches.towns[i] = lookup(town);
+                matches.zips[i] = zip;
+                matches.zipStrings[i] = zip < NULL ? lookup(-2 - zip) : null;
+            }
+            matches.size = found;
+        } finally {
+            townLock.unlock();
+        }
+        applyTownUpdates();
+    }
+
+    public void forEach(final BiConsumer<String, Address> action) {
+        for (String id : slots.keySet()) {
+            action.accept(id, get(id));
+        }
+    }
+
+    /**
+     * Weakly consistent view of the stored ids; ids are never removed.
+     */
+    public Set<String> ids() {
+        return slots.keySet();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Writes {@code address} into {@code slot}; the caller holds the slot's write lock.
+     */
+    private void write(final int slot, final String id, final Address address, final boolean created) {
+        Page page = page(slot);
+        int index = slot & PAGE_MASK;
+        int zip = encodeZip(address.getZip());
+        int town = encode(address.getTown());
+        int previousZip = created ? NULL : page.zips[index];
+        if (previousZip != zip) {
+            unindex(previousZip, slot);
+            index(zip, slot);
+        }
+        int previousTown = created ? NULL : page.towns[index];
+        if (previousTown != town) {
+            if (previousTown != NULL) {
+                townUpdates.add(new TownUpdate(previousTown, null, NULL, -1));
+            }
+            if (town != NULL) {
+                townUpdates.add(new TownUpdate(town, address.getTown(), zip, 1));
+            }
+        } else if (town != NULL) {
+            townUpdates.add(new TownUpdate(town, null, zip, 0));
+        }
+        page.ids[index] = id;
+        page.zips[index] = zip;
+        page.towns[index] = town;
+        page.revisions[index] = address.getRevision();
+    }
+
+    /**
+     * A copy of {@code slot} read optimistically, or under its read lock if a write interfered.
+     */
+    private Slot read(final int slot) {
+        StampedLock lock = lockOf(slot);
+        Slot read = new Slot();
+        long stamp = lock.tryOptimisticRead();
+        read.read(this, slot);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                read.read(this, slot);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return read;
+    }
+
+    private StampedLock lockOf(final int slot) {
+        return locks[slot & (STRIPES - 1)];
+    }
+
+    private Page page(final int slot) {
+        return pages[slot >>> PAGE_SHIFT];
+    }
+
+    /**
+     * Claims the next slot. Pages are only added, under a lock taken once per {@value #PAGE_SIZE}
+     * slots, so writes to existing pages are never lost to a copy.
+     */
+    private int allocate() {
+        int slot = size.getAndIncrement();
+        int page = slot >>> PAGE_SHIFT;
+        if (page >= pages.length) {
+            synchronized (growLock) {
+                Page[] current = pages;
+                if (page >= current.length) {
+                    Page[] grown = Arrays.copyOf(current, page + 1);
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new Page();
+                    }
+                    pages = grown;
+                }
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Runs the queued town updates unless another thread holds the town lock, in which case that thread
+     * picks them up before it lets go.
+     */
+    private void applyTownUpdates() {
+        while (!townUpdates.isEmpty() && townLock.tryLock()) {
+            try {
+                drainTownUpdates();
+            } finally {
+                townLock.unlock();
+            }
+        }
+    }
+
+    private void drainTownUpdates() {
+        for (TownUpdate update = townUpdates.poll(); update != null; update = townUpdates.poll()) {
+            if (update.delta > 0) {
+                townIndex.add(update.town, update.name, update.zip);
+            } else if (update.delta < 0) {
+                townIndex.remove(update.town);
+            } else {
+                townIndex.setZip(update.town, update.zip);
+            }
+        }
+    }
+
+    private Object zipLock(final int zip) {
+        return zipLocks[zip & (ZIP_STRIPES - 1)];
+    }
+
+    private void index(final int zip, final int slot) {
+        if (zip < 0) {
+            return;
+        }
+        synchronized (zipLock(zip)) {
+            int[] bucket = zipSlots[zip];
+            int bucketSize = zipSlotCounts[zip];
+            if (bucket == null) {
+                bucket = new int[2];
+            } else if (bucketSize == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucketSize * 2);
+            }
+            int position = insertionPoint(bucket, bucketSize, slot);
+            System.arraycopy(bucket, position, bucket, position + 1, bucketSize - position);
+            bucket[position] = slot;
+            zipSlots[zip] = bucket;
+            zipSlotCounts[zip] = bucketSize + 1;
+            zipsInUse.accumulateAndGet(zip / Long.SIZE, 1L << zip, (bits, bit) -> bits | bit);
+        }
+    }
+
+    private void unindex(final int zip, final int slot) {
+        if (zip < 0) {
+            return;
+        }
+        synchronized (zipLock(zip)) {
+            int[] bucket = zipSlots[zip];
+            int bucketSize = zipSlotCounts[zip] - 1;
+            int position = insertionPoint(bucket, bucketSize + 1, slot);
+            System.arraycopy(bucket, position + 1, bucket, position, bucketSize - position);
+            zipSlotCounts[zip] = bucketSize;
+            if (bucketSize == 0) {
+                zipsInUse.accumulateAndGet(zip / Long.SIZE, 1L << zip, (bits, bit) -> bits & ~bit);
+            }
+        }
+    }
+
+    /**
+     * Copies up to {@code max} slots of the bucket of {@code zip} that are not below {@code from} into
+     * {@code into} and returns how many were copied.
+     */
+    private int copyBucket(final int zip, final int from, final int[] into, final int max) {
+        synchronized (zipLock(zip)) {
+            int bucketSize = zipSlotCounts[zip];
+            if (bucketSize == 0) {
+                return 0;
+            }
+            int[] bucket = zipSlots[zip];
+            int start = insertionPoint(bucket, bucketSize, from);
+            int copied = Math.min(max, bucketSize - start);
+            System.arraycopy(bucket, start, into, 0, copied);
+            return copied;
+        }
+    }
+
+    /**
+     * The first zip in use at or after {@code from}, or -1 if there is none.
+     */
+    private int nextZipInUse(final int from) {
+        if (from >= ZIP_KEYS) {
+            return NULL;
+        }
+        int word = from / Long.SIZE;
+        long bits = zipsInUse.get(word) & (-1L << from);
+        while (bits == 0) {
+            if (++word == zipsInUse.length()) {
+                return NULL;
+            }
+            bits = zipsInUse.get(word);
+        }
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Index of the first slot in {@code bucket} that is not below {@code slot}.
+     */
+    private static int insertionPoint(final int[] bucket, final int bucketSize, final int slot) {
+        int low = 0;
+        int high = bucketSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (bucket[middle] < slot) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int encodeZip(final String zip) {
+        if (zip == null) {
+            return NULL;
+        }
+        if (zip.length() == ZIP_LENGTH) {
+            int value = 0;
+            for (int i = 0; i < ZIP_LENGTH; i++) {
+                char c = zip.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -2 - encode(zip);
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+        return -2 - encode(zip);
+    }
+
+    private int encode(final String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer id = dictionaryIds.get(value);
+        return id != null ? id : dictionaryIds.computeIfAbsent(value, this::addToDictionary);
+    }
+
+    /**
+     * Stores {@code value} under the next dictionary id before the id is published.
+     */
+    private int addToDictionary(final String value) {
+        int id = dictionarySize.getAndIncrement();
+        int page = id >>> PAGE_SHIFT;
+        String[][] current = dictionary;
+        if (page >= current.length) {
+            synchronized (growLock) {
+                current = dictionary;
+                if (page >= current.length) {
+                    String[][] grown = Arrays.copyOf(current, page + 1);
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new String[PAGE_SIZE];
+                    }
+                    dictionary = grown;
+                    current = grown;
+                }
+            }
+        }
+        current[page][id & PAGE_MASK] = value;
+        return id;
+    }
+
+    /**
+     * The dictionary string of {@code id}, or {@code null} for {@link #NULL} or an id read by an
+     * optimistic read that will fail validation.
+     */
+    private String lookup(final int id) {
+        String[][] current = dictionary;
+        return id >= 0 && id >>> PAGE_SHIFT < current.length ? current[id >>> PAGE_SHIFT][id & PAGE_MASK] : null;
+    }
+
+    /**
+     * The zip string of an encoded five-digit zip, or {@code null} for {@link #NULL}.
+     */
+    static String decodeZip(final int zip) {
+        if (zip == NULL) {
+            return null;
+        }
+        char[] digits = new char[ZIP_LENGTH];
+        int value = zip;
+        for (int i = ZIP_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * {@value #PAGE_SIZE} slots of every column.
+     */
+    private static final class Page {
+
+        private final String[] ids = new String[PAGE_SIZE];
+        private final int[] zips = new int[PAGE_SIZE];
+        private final int[] towns = new int[PAGE_SIZE];
+        private final long[] revisions = new long[PAGE_SIZE];
+    }
+
+    /**
+     * A change of the address count of a town: {@code delta} 1 adds one named {@code name}, -1 removes
+     * one and 0 only makes {@code zip} the zip shown for it.
+     */
+    private static final class TownUpdate {
+
+        private final int town;
+        private final String name;
+        private final int zip;
+        private final int delta;
+
+        private TownUpdate(final int town, final String name, final int zip, final int delta) {
+            this.town = town;
+            this.name = name;
+            this.zip = zip;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * One slot copied out of the columns. An optimistic read may see a dictionary id whose string is
+     * not visible yet, so lookups are bounds checked; such a read fails validation and is repeated
+     * under the lock.
+     */
+    private static final class Slot {
+
+        private String id;
+        private int zip;
+        private String zipString;
+        private String town;
+        private long revision;
+
+        private void read(final CompactAddressStore store, final int slot) {
+            Page page = store.page(slot);
+            int index = slot & PAGE_MASK;
+            id = page.ids[index];
+            zip = page.zips[index];
+            zipString = zip < NULL ? store.lookup(-2 - zip) : null;
+            town = store.lookup(page.towns[index]);
+            revision = page.revisions[index];
+        }
+
+        private Address toAddress() {
+            return new Address(zip < 0 ? zipString : decodeZip(zip), town, revision);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal stored as numbered segment files plus compacted snapshots.
+ * <p>
+ * Saves are encoded on the caller's thread and handed to a single writer thread. That thread writes
+ * every queued record with one gathering write, forces the segment once for the whole group, applies
+ * the records and only then releases the waiting callers. A group whose write or force fails is cut
+ * off the segment again before the next one is written. When a segment grows past the snapshot
+ * threshold the writer starts a new segment, and a background task writes a snapshot of the store,
+ * which by then contains every record of the older segments, and deletes those segments. Recovery
+ * cuts a torn tail off the newest segment only; a snapshot or older segment that does not read to its
+ * end fails recovery.
+ */
+@Component
+@ConditionalOnProperty(name = "address.store.durable", havingValue = "true")
+public class FileAddressJournal implements AddressJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileAddressJournal.class);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int MAX_GROUP_SIZE = 1024;
+
+    private static final long MAX_MAPPED_REGION = 1L << 30;
+
+    private static final PendingWrite SHUTDOWN = new PendingWrite(null, null);
+
+    private final Path directory;
+
+    private final long snapshotThreshold;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(
+            runnable -> daemon(runnable, "address-journal-snapshot"));
+
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+
+    private Consumer<BiConsumer<String, Address>> storeSource;
+
+    private FileChannel segment;
+
+    private long segmentNumber;
+
+    private Thread writer;
+
+    public FileAddressJournal(@Value("${address.store.directory:data}") final String directory,
+                              @Value("${address.store.snapshot-threshold-bytes:268435456}") final long snapshotThreshold) {
+        this.directory = Paths.get(directory);
+        this.snapshotThreshold = snapshotThreshold;
+    }
+
+    @Override
+    public synchronized void recover(final BiConsumer<String, Address> consumer,
+                                     final Consumer<BiConsumer<String, Address>> storeSource) {
+        if (writer != null) {
+            throw new IllegalStateException("journal already recovered");
+        }
+        this.storeSource = storeSource;
+        try {
+            Files.createDirectories(directory);
+            TreeMap<Long, Path> snapshots = files(SNAPSHOT_PREFIX);
+            TreeMap<Long, Path> segments = files(SEGMENT_PREFIX);
+
+            long firstSegment = 0;
+            if (!snapshots.isEmpty()) {
+                firstSegment = snapshots.lastKey();
+                Path snapshot = snapshots.lastEntry().getValue();
+                checkIntact(snapshot, read(snapshot, consumer));
+            }
+            long lastSegment = firstSegment;
+            for (Map.Entry<Long, Path> entry : segments.tailMap(firstSegment, true).entrySet()) {
+                long end = read(entry.getValue(), consumer);
+                lastSegment = entry.getKey();
+                if (lastSegment < segments.lastKey()) {
+                    checkIntact(entry.getValue(), end);
+                } else if (end < Files.size(entry.getValue())) {
+                    LOG.warn("truncating torn tail of {} at offset {}", entry.getValue(), end);
+                    try (FileChannel channel = FileChannel.open(entry.getValue(), WRITE)) {
+                        channel.truncate(end);
+                    }
+                }
+            }
+
+            openSegment(lastSegment, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        writer = daemon(this::writeLoop, "address-journal-writer");
+        writer.start();
+    }
+
+    @Override
+    public void append(final String id, final Address address, final Runnable apply) {
+        try {
+            appendAsync(id, address, apply).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for journal", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException
+                    ? new UncheckedIOException((IOException) cause)
+                    : new IllegalStateException(cause);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAsync(final String id, final Address address, final Runnable apply) {
+        if (writer == null) {
+            throw new IllegalStateException("journal not recovered yet");
+        }
+        PendingWrite write = new PendingWrite(JournalRecords.encode(id, address), apply);
+        queue.add(write);
+        return write.done;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException, IOException {
+        if (writer != null) {
+            queue.add(SHUTDOWN);
+            writer.join();
+        }
+        snapshotExecutor.shutdown();
+        snapshotExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        if (segment != null) {
+            segment.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> group = new ArrayList<>();
+        while (true) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - 1);
+            boolean shutdown = group.remove(SHUTDOWN);
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+            if (shutdown) {
+                return;
+            }
+        }
+    }
+
+    private void commit(final List<PendingWrite> group) {
+        ByteBuffer[] records = new ByteBuffer[group.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = group.get(i).record;
+        }
+        long start = -1;
+        try {
+            start = segment.position();
+            long remaining = 0;
+            for (ByteBuffer record : records) {
+                remaining += record.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= segment.write(records);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            discard(start);
+            group.forEach(write -> write.done.completeExceptionally(e));
+            return;
+        }
+
+        for (PendingWrite write : group) {
+            try {
+                write.apply.run();
+                write.done.complete(null);
+            } catch (RuntimeException e) {
+                write.done.completeExceptionally(e);
+            }
+        }
+        maybeSnapshot();
+    }
+
+    /**
+     * Cuts what a failed group left in the segment back to {@code start}, so that none of its records
+     * is recovered after they were reported as failed and later records follow the last good one. If
+     * that fails too, the writer moves on to a new segment and the records may still be recovered, or,
+     * if the group was written only in part, recovery refuses the journal until the segment is repaired.
+     */
+    private void discard(final long start) {
+        try {
+            if (start < 0) {
+                throw new IOException("segment position unknown");
+            }
+            segment.truncate(start);
+            segment.position(start);
+        } catch (IOException e) {
+            LOG.error("could not discard a failed group from journal segment {}", segmentNumber, e);
+            try {
+                openSegment(segmentNumber + 1, false);
+            } catch (IOException rollFailed) {
+                LOG.error("could not start a new journal segment", rollFailed);
+            }
+        }
+    }
+
+    private void maybeSnapshot() {
+        try {
+            if (segment.size() < snapshotThreshold
+                    || !snapshotRunning.compareAndSet(false, true)) {
+                return;
+            }
+            openSegment(segmentNumber + 1, true);
+        } catch (IOException e) {
+            snapshotRunning.set(false);
+            LOG.error("could not start a new journal segment", e);
+            return;
+        }
+
+        long snapshotNumber = segmentNumber;
+        snapshotExecutor.execute(() -> {
+            try {
+                writeSnapshot(snapshotNumber);
+            } catch (IOException | RuntimeException e) {
+                LOG.error("journal snapshot {} failed", snapshotNumber, e);
+            } finally {
+                snapshotRunning.set(false);
+            }
+        });
+    }
+
+    private void writeSnapshot(final long snapshotNumber) throws IOException {
+        Path target = path(SNAPSHOT_PREFIX, snapshotNumber);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            storeSource.accept((id, address) -> {
+                ByteBuffer record = JournalRecords.encode(id, address);
+                try {
+                    if (buffer.remaining() < record.remaining()) {
+                        flush(channel, buffer);
+                    }
+                    if (buffer.remaining() < record.remaining()) {
+                        channel.write(record);
+                    } else {
+                        buffer.put(record);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            flush(channel, buffer);
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Path older : files(SNAPSHOT_PREFIX).headMap(snapshotNumber).values()) {
+            Files.deleteIfExists(older);
+        }
+        for (Path covered : files(SEGMENT_PREFIX).headMap(snapshotNumber).values()) {
+            Files.deleteIfExists(covered);
+        }
+        LOG.info("wrote journal snapshot {}", target);
+    }
+
+    private void openSegment(final long number, final boolean forceCurrent) throws IOException {
+        if (segment != null) {
+            if (forceCurrent) {
+                segment.force(true);
+            }
+            segment.close();
+        }
+        segmentNumber = number;
+        segment = FileChannel.open(path(SEGMENT_PREFIX, number), CREATE, WRITE);
+        segment.position(segment.size());
+    }
+
+    /**
+     * Only the newest segment can end in a torn write; anything unreadable before its end would leave
+     * a gap under the records replayed after it, so recovery stops and the journal is left as it is.
+     */
+    private static void checkIntact(final Path file, final long end) throws IOException {
+        if (end < Files.size(file)) {
+            LOG.error("journal file {} is corrupt at offset {}, refusing to recover over it", file, end);
+            throw new IOException("corrupt journal file " + file + " at offset " + end);
+        }
+    }
+
+    private long read(final Path file, final BiConsumer<String, Address> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_MAPPED_REGION, size - position));
+                int start = region.position();
+                while (JournalRecords.decode(region, consumer)) {
+                    start = region.position();
+                }
+                if (start == 0) {
+                    break;
+                }
+                position += start;
+            }
+            return position;
+        }
+    }
+
+    private TreeMap<Long, Path> files(final String prefix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(prefix.length(), name.length() - FILE_SUFFIX.length())), file);
+            }
+        }
+        return files;
+    }
+
+    private Path path(final String prefix, final long number) {
+        return directory.resolve(String.format("%s%016d%s", prefix, number, FILE_SUFFIX));
+    }
+
+    private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static Thread daemon(final Runnable runnable, final String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class PendingWrite {
+
+        private final ByteBuffer record;
+
+        private final Runnable apply;
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(final ByteBuffer record, final Runnable apply) {
+            this.record = record;
+            this.apply = apply;
+        }
+    }
+}
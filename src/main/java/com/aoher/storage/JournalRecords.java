@@ -0,0 +1,125 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Record layout shared by journal segments and snapshots:
+ * {@code int length, int crc32, long revision, id, zip, town}, where every string is its UTF-8 byte
+ * length followed by the bytes. A length below 32768 is one {@code short} and null is -1; longer ones
+ * take two, the first with its top bit set, so records with only short strings read as they always did.
+ */
+final class JournalRecords {
+
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final int LONG_LENGTH = 0x8000;
+
+    /**
+     * The high half of a long length must not look like {@link #NULL_LENGTH}.
+     */
+    private static final int MAX_LENGTH = (0x7FFF << Short.SIZE) - 1;
+
+    static ByteBuffer encode(final String id, final Address address) {
+        byte[] idBytes = bytes(id);
+        byte[] zipBytes = bytes(address.getZip());
+        byte[] townBytes = bytes(address.getTown());
+        int bodySize = Long.BYTES + size(idBytes) + size(zipBytes) + size(townBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        buffer.position(HEADER_SIZE);
+        buffer.putLong(address.getRevision());
+        put(buffer, idBytes);
+        put(buffer, zipBytes);
+        put(buffer, townBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodySize);
+        buffer.putInt(0, bodySize);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes the record at the buffer's position and advances past it. Returns {@code false}, leaving
+     * the position unchanged, when the remaining bytes do not hold a complete and intact record.
+     */
+    static boolean decode(final ByteBuffer buffer, final BiConsumer<String, Address> consumer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int bodySize = buffer.getInt(start);
+        int checksum = buffer.getInt(start + Integer.BYTES);
+        if (bodySize <= 0 || buffer.remaining() - HEADER_SIZE < bodySize) {
+            return false;
+        }
+
+        byte[] body = new byte[bodySize];
+        buffer.position(start + HEADER_SIZE);
+        buffer.get(body);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, bodySize);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return false;
+        }
+
+        ByteBuffer record = ByteBuffer.wrap(body);
+        long revision = record.getLong();
+        String id = string(record);
+        String zip = string(record);
+        String town = string(record);
+        consumer.accept(id, new Address(zip, town, revision));
+        return true;
+    }
+
+    private static byte[] bytes(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(final byte[] bytes) {
+        if (bytes == null) {
+            return Short.BYTES;
+        }
+        return (bytes.length > Short.MAX_VALUE ? Integer.BYTES : Short.BYTES) + bytes.length;
+    }
+
+    private static void put(final ByteBuffer buffer, final byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_LENGTH);
+            return;
+        }
+        if (bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("value too long for journal: " + bytes.length + " bytes");
+        }
+        if (bytes.length > Short.MAX_VALUE) {
+            buffer.putShort((short) (LONG_LENGTH | bytes.length >>> Short.SIZE));
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String string(final ByteBuffer record) {
+        int length = record.getShort();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            length = (length & Short.MAX_VALUE) << Short.SIZE | Short.toUnsignedInt(record.getShort());
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private JournalRecords() {
+    }
+}
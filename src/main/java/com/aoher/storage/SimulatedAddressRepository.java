@@ -0,0 +1,119 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory stand-in for a slow backend: every call waits {@code address.repository.latency-ms}
+ * before it touches the map. With {@code address.repository.capacity} above 0 only that many calls
+ * wait at once and the rest queue for their turn, so latency grows with concurrency as it would on a
+ * saturated backend. A batch of saves costs one call. It starts empty and is not durable.
+ */
+@Component
+@ConditionalOnProperty(name = "address.repository.simulated", havingValue = "true")
+public class SimulatedAddressRepository implements AddressRepository {
+
+    private final ConcurrentMap<String, Address> addresses = new ConcurrentHashMap<>();
+
+    private final long latencyNanos;
+
+    private final Semaphore capacity;
+
+    private final LongAdder finds = new LongAdder();
+
+    private volatile CountDownLatch findGate;
+
+    public SimulatedAddressRepository(@Value("${address.repository.latency-ms:50}") final long latencyMillis,
+                                      @Value("${address.repository.capacity:0}") final int capacity) {
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.capacity = capacity > 0 ? new Semaphore(capacity, true) : null;
+    }
+
+    @Override
+    public Address find(final String id) {
+        finds.increment();
+        delay();
+        CountDownLatch gate = findGate;
+        if (gate != null) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return addresses.get(id);
+    }
+
+    @Override
+    public void save(final String id, final Address address) {
+        delay();
+        merge(id, address);
+    }
+
+    @Override
+    public void saveAll(final Map<String, Address> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        delay();
+        batch.forEach(this::merge);
+    }
+
+    @Override
+    public long maxRevision() {
+        delay();
+        long max = 0;
+        for (Address address : addresses.values()) {
+            max = Math.max(max, address.getRevision());
+        }
+        return max;
+    }
+
+    /**
+     * Holds every find after its latency until {@code gate} opens, so that tests can make calls overlap
+     * deterministically; {@code null} lets them through again.
+     */
+    public void holdFinds(final CountDownLatch gate) {
+        findGate = gate;
+    }
+
+    public long getFindCount() {
+        return finds.sum();
+    }
+
+    private void merge(final String id, final Address address) {
+        addresses.merge(id, address,
+                (stored, saved) -> saved.getRevision() > stored.getRevision() ? saved : stored);
+    }
+
+    private void delay() {
+        if (capacity == null) {
+            pause(latencyNanos);
+            return;
+        }
+        capacity.acquireUninterruptibly();
+        try {
+            pause(latencyNanos);
+        } finally {
+            capacity.release();
+        }
+    }
+
+    private static void pause(final long latencyNanos) {
+        long deadline = System.nanoTime() + latencyNanos;
+        for (long remaining = latencyNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.aoher.storage;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Radix trie over the folded names of the towns in a {@link CompactAddressStore} dictionary. Folding
+ * lower-cases a character and drops its accents, so "mun" finds "M&uuml;nchen". Every node caches
+ * the {@value #MAX_MATCHES} towns of its subtree with the most addresses, so a lookup walks the prefix
+ * and copies one list without allocating.
+ * <p>
+ * Not thread-safe; the store calls it under its town lock. Nodes are never removed, like the dictionary.
+ */
+final class TownIndex {
+
+    static final int MAX_MATCHES = 10;
+
+    private static final int ASCII = 0x80;
+
+    /**
+     * Folded characters outside ASCII, filled in on first use; 0 means not folded yet.
+     */
+    private static final char[] FOLDED = new char[Character.MAX_VALUE + 1];
+
+    private final Node root = new Node(new char[0], null);
+
+    private Node[] nodes = new Node[1024];
+
+    private int[] counts = new int[1024];
+
+    private int[] zips = new int[1024];
+
+    private final int[] candidates = new int[MAX_MATCHES];
+
+    /**
+     * Counts one more address in {@code town} and makes {@code zip} the zip shown for it.
+     */
+    void add(final int town, final String name, final int zip) {
+        grow(town);
+        if (nodes[town] == null) {
+            nodes[town] = insert(fold(name), town);
+        }
+        counts[town]++;
+        zips[town] = zip;
+        promote(nodes[town], town);
+    }
+
+    void remove(final int town) {
+        counts[town]--;
+        demote(nodes[town], town);
+    }
+
+    void setZip(final int town, final int zip) {
+        zips[town] = zip;
+    }
+
+    int zipOf(final int town) {
+        return zips[town];
+    }
+
+    /**
+     * Copies up to {@code towns.length} towns starting with {@code prefix}, most addresses first, into
+     * {@code towns} and returns how many there are.
+     */
+    int complete(final CharSequence prefix, final int[] towns) {
+        Node node = root;
+        int matched = 0;
+        int i = 0;
+        while (i < prefix.length()) {
+            if (matched == node.label.length) {
+                node = node.child(fold(prefix.charAt(i)));
+                if (node == null) {
+                    return 0;
+                }
+                matched = 0;
+            }
+            if (node.label[matched] != fold(prefix.charAt(i))) {
+                return 0;
+            }
+            matched++;
+            i++;
+        }
+        int size = Math.min(node.topSize, towns.length);
+        System.arraycopy(node.top, 0, towns, 0, size);
+        return size;
+    }
+
+    static char fold(final char c) {
+        if (c < ASCII) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        char folded = FOLDED[c];
+        if (folded == 0) {
+            folded = Character.isSurrogate(c)
+                    ? c : Character.toLowerCase(Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0));
+            FOLDED[c] = folded;
+        }
+        return folded;
+    }
+
+    private static char[] fold(final String name) {
+        char[] key = new char[name.length()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = fold(name.charAt(i));
+        }
+        return key;
+    }
+
+    private Node insert(final char[] key, final int town) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length) {
+            Node child = node.child(key[i]);
+            if (child == null) {
+                child = new Node(Arrays.copyOfRange(key, i, key.length), node);
+                node.add(child);
+                node = child;
+                break;
+            }
+            int common = 0;
+            while (common < child.label.length && i + common < key.length
+                    && child.label[common] == key[i + common]) {
+                common++;
+            }
+            if (common < child.label.length) {
+                child = split(node, child, common);
+            }
+            node = child;
+            i += common;
+        }
+        node.towns = Arrays.copyOf(node.towns, node.towns.length + 1);
+        node.towns[node.towns.length - 1] = town;
+        return node;
+    }
+
+    /**
+     * Puts a new node for the first {@code length} characters of {@code child}'s label in its place.
+     */
+    private static Node split(final Node parent, final Node child, final int length) {
+        Node middle = new Node(Arrays.copyOf(child.label, length), parent);
+        parent.children[parent.indexOf(child.label[0])] = middle;
+        child.label = Arrays.copyOfRange(child.label, length, child.label.length);
+        child.parent = middle;
+        middle.add(child);
+        middle.top = Arrays.copyOf(child.top, child.top.length);
+        middle.topSize = child.topSize;
+        return middle;
+    }
+
+    /**
+     * Moves {@code town}, whose count went up, forward in the cached lists of {@code node} and its
+     * ancestors. Stops at the first list it does not enter, since the lists above it are unchanged.
+     */
+    private void promote(final Node node, final int town) {
+        for (Node current = node; current != null; current = current.parent) {
+            int index = indexOf(current.top, current.topSize, town);
+            if (index < 0) {
+                if (current.topSize == MAX_MATCHES && !ranksBefore(town, current.top[MAX_MATCHES - 1])) {
+                    return;
+                }
+                if (current.top.length < MAX_MATCHES) {
+                    current.top = Arrays.copyOf(current.top, MAX_MATCHES);
+                }
+                index = current.topSize < MAX_MATCHES ? current.topSize++ : MAX_MATCHES - 1;
+                current.top[index] = town;
+            }
+            for (; index > 0 && ranksBefore(town, current.top[index - 1]); index--) {
+                current.top[index] = current.top[index - 1];
+                current.top[index - 1] = town;
+            }
+        }
+    }
+
+    /**
+     * Moves {@code town}, whose count went down, back in the cached lists of {@code node} and its
+     * ancestors. A list is recomputed from its node when the town has to leave it or ends up last in a
+     * full list, where a town from outside the list might now rank before it.
+     */
+    private void demote(final Node node, final int town) {
+        for (Node current = node; current != null; current = current.parent) {
+            int index = indexOf(current.top, current.topSize, town);
+            if (index < 0) {
+                return;
+            }
+            for (; index < current.topSize - 1 && ranksBefore(current.top[index + 1], town); index++) {
+                current.top[index] = current.top[index + 1];
+                current.top[index + 1] = town;
+            }
+            if (counts[town] <= 0 || index == MAX_MATCHES - 1) {
+                recompute(current);
+            }
+        }
+    }
+
+    /**
+     * Ranks the own towns of {@code node} and the cached towns of its children.
+     */
+    private void recompute(final Node node) {
+        int size = 0;
+        for (int town : node.towns) {
+            size = offer(town, size);
+        }
+        for (Node child : node.children) {
+            for (int i = 0; i < child.topSize; i++) {
+                size = offer(child.top[i], size);
+            }
+        }
+        System.arraycopy(candidates, 0, node.top, 0, size);
+        node.topSize = size;
+    }
+
+    private static int indexOf(final int[] towns, final int size, final int town) {
+        for (int i = 0; i < size; i++) {
+            if (towns[i] == town) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts {@code town} into the first {@code size} ranked candidates unless it ranks below all of
+     * {@value #MAX_MATCHES}; towns without addresses are left out.
+     */
+    private int offer(final int town, final int size) {
+        if (counts[town] <= 0) {
+            return size;
+        }
+        int position = size;
+        while (position > 0 && ranksBefore(town, candidates[position - 1])) {
+            position--;
+        }
+        if (position == MAX_MATCHES) {
+            return size;
+        }
+        int newSize = Math.min(size + 1, MAX_MATCHES);
+        System.arraycopy(candidates, position, candidates, position + 1, newSize - position - 1);
+        candidates[position] = town;
+        return newSize;
+    }
+
+    private boolean ranksBefore(final int town, final int other) {
+        return counts[town] > counts[other] || counts[town] == counts[other] && town < other;
+    }
+
+    private void grow(final int town) {
+        if (town >= nodes.length) {
+            int capacity = Math.max(town + 1, nodes.length * 2);
+            nodes = Arrays.copyOf(nodes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            zips = Arrays.copyOf(zips, capacity);
+        }
+    }
+
+    private static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private static final int[] NONE = new int[0];
+
+        private char[] label;
+
+        private Node parent;
+
+        private char[] firstChars = new char[0];
+
+        private Node[] children = NO_CHILDREN;
+
+        private int[] towns = NONE;
+
+        private int[] top = NONE;
+
+        private int topSize;
+
+        private Node(final char[] label, final Node parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        private Node child(final char c) {
+            int index = indexOf(c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private int indexOf(final char c) {
+            return Arrays.binarySearch(firstChars, c);
+        }
+
+        private void add(final Node child) {
+            int index = -indexOf(child.label[0]) - 1;
+            firstChars = insertAt(firstChars, index, child.label[0]);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            grown[index] = child;
+            children = grown;
+        }
+
+        private static char[] insertAt(final char[] values, final int index, final char value) {
+            char[] grown = new char[values.length + 1];
+            System.arraycopy(values, 0, grown, 0, index);
+            System.arraycopy(values, index, grown, index + 1, values.length - index);
+            grown[index] = value;
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.aoher.storage;
+
+/**
+ * Reusable result of {@link CompactAddressStore#completeTowns}: towns with the zip of their most
+ * recent save. Filling it allocates nothing; {@link #getZip} creates the zip string on demand.
+ */
+public final class TownMatches {
+
+    public static final int MAX_SIZE = TownIndex.MAX_MATCHES;
+
+    final int[] townIds;
+
+    final String[] towns;
+
+    final int[] zips;
+
+    final String[] zipStrings;
+
+    int size;
+
+    public TownMatches(final int capacity) {
+        if (capacity < 1 || capacity > MAX_SIZE) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_SIZE);
+        }
+        townIds = new int[capacity];
+        towns = new String[capacity];
+        zips = new int[capacity];
+        zipStrings = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getTown(final int index) {
+        return towns[index];
+    }
+
+    public String getZip(final int index) {
+        return zipStrings[index] != null ? zipStrings[index] : CompactAddressStore.decodeZip(zips[index]);
+    }
+}
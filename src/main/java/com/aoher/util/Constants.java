@@ -4,6 +4,11 @@ public class Constants {
 
     public static final String ADDRESS_PATTERN = "(\\d{5}) (.*)";
 
+    public static final String DEFAULT_ADDRESS_ID = "default";
+
+    public static final String WRITE_TOKEN_HEADER = "X-Write-Token";
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
 
     private Constants() {
     }
@@ -0,0 +1,70 @@
+package com.aoher.util;
+
+import com.aoher.version.ValidVersion;
+import com.aoher.version.WireFormat;
+
+import java.util.function.LongPredicate;
+
+/**
+ * Entity tags of address representations: {@code "<epoch>.<revision>-<version>"}, with
+ * {@code +<suffix>} for wire formats other than JSON. The epoch of the revision sequence keeps a tag
+ * from matching a different address after revisions start over. All representations of a revision
+ * match the same {@code If-Match} precondition.
+ */
+public final class ETags {
+
+    private static final LongPredicate EXISTS = revision -> revision > 0;
+
+    private static final LongPredicate NEVER = revision -> false;
+
+    private ETags() {
+    }
+
+    public static String of(final String epoch, final long revision, final ValidVersion version,
+                            final WireFormat format) {
+        String etag = "\"" + epoch + '.' + revision + '-' + version;
+        return format == WireFormat.JSON ? etag + '"' : etag + '+' + format.getSuffix() + '"';
+    }
+
+    /**
+     * Turns an {@code If-Match} header into a test of the current revision, 0 meaning there is no
+     * address yet, or returns {@code null} without a header. Weak and foreign tags, and tags of another
+     * epoch, never match, since {@code If-Match} compares strongly.
+     */
+    public static LongPredicate ifMatch(final String header, final String epoch) {
+        if (header == null) {
+            return null;
+        }
+        if (header.trim().equals("*")) {
+            return EXISTS;
+        }
+        LongPredicate matches = NEVER;
+        for (String tag : header.split(",")) {
+            long revision = revision(tag.trim(), epoch);
+            if (revision > 0) {
+                LongPredicate previous = matches;
+                matches = current -> current == revision || previous.test(current);
+            }
+        }
+        return matches;
+    }
+
+    private static long revision(final String tag, final String epoch) {
+        if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return -1;
+        }
+        int dot = epoch.length() + 1;
+        if (!tag.startsWith(epoch, 1) || tag.length() <= dot || tag.charAt(dot) != '.') {
+            return -1;
+        }
+        long revision = 0;
+        int i = dot + 1;
+        for (; i < tag.length() && tag.charAt(i) >= '0' && tag.charAt(i) <= '9'; i++) {
+            if (revision > (Long.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            revision = revision * 10 + (tag.charAt(i) - '0');
+        }
+        return i > dot + 1 && tag.charAt(i) == '-' ? revision : -1;
+    }
+}
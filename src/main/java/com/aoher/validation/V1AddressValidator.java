@@ -0,0 +1,32 @@
+package com.aoher.validation;
+
+import com.aoher.converter.V1AddressParser;
+import com.aoher.version.AddressParamV1;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+/**
+ * Marks valid params as parsed, so that converting them does not scan the address a second time.
+ */
+public class V1AddressValidator implements ConstraintValidator<ValidV1Address, AddressParamV1> {
+
+    private static final String ADDRESS_PROPERTY = "address";
+
+    @Override
+    public boolean isValid(final AddressParamV1 param, final ConstraintValidatorContext context) {
+        String address = param.getAddress();
+        if (address == null) {
+            return true;
+        }
+        if (V1AddressParser.isValid(address)) {
+            param.markParsed();
+            return true;
+        }
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate(context.getDefaultConstraintMessageTemplate())
+                .addPropertyNode(ADDRESS_PROPERTY)
+                .addConstraintViolation();
+        return false;
+    }
+}
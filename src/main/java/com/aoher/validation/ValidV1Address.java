@@ -0,0 +1,27 @@
+package com.aoher.validation;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The {@code address} of an {@link com.aoher.version.AddressParamV1} is null or a five digit zip, a space
+ * and a town. Violations are reported on the {@code address} property.
+ */
+@Documented
+@Constraint(validatedBy = V1AddressValidator.class)
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface ValidV1Address {
+
+    String message() default "must be a five digit zip, a space and a town";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
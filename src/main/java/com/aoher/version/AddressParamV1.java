@@ -1,19 +1,33 @@
 package com.aoher.version;
 
-import javax.validation.constraints.Pattern;
-
-import static com.aoher.util.Constants.ADDRESS_PATTERN;
+import com.aoher.validation.ValidV1Address;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+@ValidV1Address
 public class AddressParamV1 {
 
     private String address;
 
-    @Pattern(regexp = ADDRESS_PATTERN)
+    private boolean parsed;
+
     public String getAddress() {
         return address;
     }
 
     public void setAddress(final String address) {
         this.address = address;
+        this.parsed = false;
+    }
+
+    /**
+     * Whether validation has already found {@link #getAddress()} well-formed.
+     */
+    @JsonIgnore
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    public void markParsed() {
+        this.parsed = true;
     }
 }
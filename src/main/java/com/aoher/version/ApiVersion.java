@@ -0,0 +1,88 @@
+package com.aoher.version;
+
+import org.springframework.http.MediaType;
+
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+/**
+ * The version a request asked for together with the strategy it used to ask. All combinations are
+ * created up front, so resolving a request never allocates one.
+ */
+public final class ApiVersion {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.valueOf(APPLICATION_NDJSON_VALUE);
+
+    private static final MediaType[] STANDARD_MEDIA_TYPES = {
+            APPLICATION_JSON,
+            APPLICATION_CBOR,
+            MediaType.valueOf("application/x-jackson-smile"),
+            MediaType.valueOf("application/x-protobuf")
+    };
+
+    private static final ApiVersion[][] TABLE = createTable();
+
+    private final VersioningStrategy strategy;
+
+    private final ValidVersion version;
+
+    private final MediaType[] mediaTypes = new MediaType[WireFormat.values().length];
+
+    private final MediaType ndjsonMediaType;
+
+    private ApiVersion(final VersioningStrategy strategy, final ValidVersion version) {
+        this.strategy = strategy;
+        this.version = version;
+        for (WireFormat format : WireFormat.values()) {
+            mediaTypes[format.ordinal()] = strategy == VersioningStrategy.ACCEPT
+                    ? MediaType.valueOf(VersioningStrategy.VENDOR_TYPE_PREFIX + version + '+' + format.getSuffix())
+                    : STANDARD_MEDIA_TYPES[format.ordinal()];
+        }
+        this.ndjsonMediaType = strategy == VersioningStrategy.ACCEPT
+                ? MediaType.valueOf(VersioningStrategy.VENDOR_TYPE_PREFIX + version + "+ndjson")
+                : APPLICATION_NDJSON;
+    }
+
+    public static ApiVersion of(final VersioningStrategy strategy, final ValidVersion version) {
+        return TABLE[strategy.ordinal()][version.ordinal()];
+    }
+
+    public VersioningStrategy getStrategy() {
+        return strategy;
+    }
+
+    public ValidVersion getVersion() {
+        return version;
+    }
+
+    public MediaType getJsonMediaType() {
+        return getMediaType(WireFormat.JSON);
+    }
+
+    public MediaType getMediaType(final WireFormat format) {
+        return mediaTypes[format.ordinal()];
+    }
+
+    public MediaType getNdjsonMediaType() {
+        return ndjsonMediaType;
+    }
+
+    @Override
+    public String toString() {
+        return strategy + ":" + version;
+    }
+
+    private static ApiVersion[][] createTable() {
+        VersioningStrategy[] strategies = VersioningStrategy.values();
+        ValidVersion[] versions = ValidVersion.values();
+        ApiVersion[][] table = new ApiVersion[strategies.length][versions.length];
+        for (VersioningStrategy strategy : strategies) {
+            for (ValidVersion version : versions) {
+                table[strategy.ordinal()][version.ordinal()] = new ApiVersion(strategy, version);
+            }
+        }
+        return table;
+    }
+}
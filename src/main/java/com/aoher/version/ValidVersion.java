@@ -2,5 +2,17 @@ package com.aoher.version;
 
 public enum ValidVersion {
     V1,
-    V2
+    V2;
+
+    private static final ValidVersion[] VALUES = values();
+
+    public static ValidVersion parse(final String value, final int from, final int to, final boolean ignoreCase) {
+        for (ValidVersion version : VALUES) {
+            String name = version.name();
+            if (name.length() == to - from && value.regionMatches(ignoreCase, from, name, 0, name.length())) {
+                return version;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,15 @@
+package com.aoher.version;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks handlers that serve every {@link VersioningStrategy}. Such handlers only match requests whose
+ * version can be resolved, and may declare an {@link ApiVersion} parameter to receive it.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedApi {
+}
@@ -0,0 +1,15 @@
+package com.aoher.version;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds and validates the request parameters as the parameter class of the requested version, and
+ * hands the converted {@link com.aoher.model.Address} to the handler.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedParam {
+}
@@ -0,0 +1,127 @@
+package com.aoher.version;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+public enum VersioningStrategy {
+
+    URL("/apiurl/") {
+        @Override
+        ValidVersion resolveVersion(final String lookupPath, final UnaryOperator<String> headers) {
+            int from = getPrefix().length();
+            int to = lookupPath.indexOf('/', from);
+            return ValidVersion.parse(lookupPath, from, to < 0 ? lookupPath.length() : to, false);
+        }
+    },
+
+    HEADER("/apiheader/") {
+        @Override
+        ValidVersion resolveVersion(final String lookupPath, final UnaryOperator<String> headers) {
+            String header = headers.apply(API_VERSION_HEADER);
+            return header == null ? null : ValidVersion.parse(header, 0, header.length(), false);
+        }
+    },
+
+    ACCEPT("/apiaccept/") {
+        @Override
+        ValidVersion resolveVersion(final String lookupPath, final UnaryOperator<String> headers) {
+            String accept = headers.apply(HttpHeaders.ACCEPT);
+            return accept == null ? null : vendorVersion(acceptedTypes(accept));
+        }
+    };
+
+    public static final String API_VERSION_HEADER = "X-API-Version";
+
+    public static final String VENDOR_TYPE_PREFIX = "application/vnd.company.app-";
+
+    private static final String VENDOR_SUBTYPE_PREFIX = "vnd.company.app-";
+
+    private static final VersioningStrategy[] VALUES = values();
+
+    private final String prefix;
+
+    VersioningStrategy(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public static VersioningStrategy of(final String lookupPath) {
+        for (VersioningStrategy strategy : VALUES) {
+            if (lookupPath.startsWith(strategy.prefix)) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the version of a request from its lookup path and a header lookup, so that both the
+     * servlet and the reactive stack share one implementation.
+     */
+    public static ApiVersion resolve(final String lookupPath, final UnaryOperator<String> headers) {
+        VersioningStrategy strategy = of(lookupPath);
+        if (strategy == null) {
+            return null;
+        }
+        ValidVersion version = strategy.resolveVersion(lookupPath, headers);
+        return version == null ? null : ApiVersion.of(strategy, version);
+    }
+
+    public static boolean isVendorType(final MediaType mediaType) {
+        return "application".equalsIgnoreCase(mediaType.getType())
+                && mediaType.getSubtype().regionMatches(true, 0, VENDOR_SUBTYPE_PREFIX, 0, VENDOR_SUBTYPE_PREFIX.length());
+    }
+
+    /**
+     * The version of a vendor type such as {@code application/vnd.company.app-V1+cbor}, or null if it is
+     * not a vendor type or names no known version.
+     */
+    public static ValidVersion vendorVersion(final MediaType mediaType) {
+        if (!isVendorType(mediaType)) {
+            return null;
+        }
+        String subtype = mediaType.getSubtype();
+        int to = subtype.indexOf('+', VENDOR_SUBTYPE_PREFIX.length());
+        return ValidVersion.parse(subtype, VENDOR_SUBTYPE_PREFIX.length(), to < 0 ? subtype.length() : to, true);
+    }
+
+    /**
+     * The version of the first vendor type in {@code mediaTypes} that names a known one, or null.
+     */
+    public static ValidVersion vendorVersion(final List<MediaType> mediaTypes) {
+        for (MediaType mediaType : mediaTypes) {
+            ValidVersion version = vendorVersion(mediaType);
+            if (version != null) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The media ranges of an Accept header a client takes, most specific and then highest quality
+     * first, without those refused with quality 0; none if the header does not parse. The version and
+     * the wire format of a request are both chosen from this order.
+     */
+    public static List<MediaType> acceptedTypes(final String accept) {
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Collections.emptyList();
+        }
+        mediaTypes.removeIf(mediaType -> mediaType.getQualityValue() == 0);
+        MediaType.sortBySpecificityAndQuality(mediaTypes);
+        return mediaTypes;
+    }
+
+    abstract ValidVersion resolveVersion(String lookupPath, UnaryOperator<String> headers);
+}
@@ -0,0 +1,67 @@
+package com.aoher.version;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Structured syntax suffix of the vendor media types, {@code cbor} in
+ * {@code application/vnd.company.app-V1+cbor}.
+ */
+public enum WireFormat {
+    JSON("json"),
+    CBOR("cbor"),
+    SMILE("smile"),
+    PROTOBUF("protobuf");
+
+    private static final WireFormat[] VALUES = values();
+
+    private final String suffix;
+
+    WireFormat(final String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * The format of a vendor type such as {@code application/vnd.company.app-V1+cbor}, read from the
+     * suffix of its subtype, or null if {@code mediaType} is null, not a vendor type or its suffix is
+     * not a known format.
+     */
+    public static WireFormat fromVendorType(final MediaType mediaType) {
+        if (mediaType == null || !VersioningStrategy.isVendorType(mediaType)) {
+            return null;
+        }
+        String subtype = mediaType.getSubtype();
+        int from = subtype.lastIndexOf('+') + 1;
+        if (from == 0) {
+            return null;
+        }
+        for (WireFormat format : VALUES) {
+            if (subtype.length() - from == format.suffix.length()
+                    && subtype.regionMatches(true, from, format.suffix, 0, format.suffix.length())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The format a response to {@code apiVersion} is written in: for the accept strategy the one of the
+     * first vendor type of that version in {@link VersioningStrategy#acceptedTypes}, the order the
+     * version was resolved in; JSON otherwise or if there is none.
+     */
+    public static WireFormat negotiate(final ApiVersion apiVersion, final String accept) {
+        if (apiVersion.getStrategy() != VersioningStrategy.ACCEPT || accept == null) {
+            return JSON;
+        }
+        for (MediaType mediaType : VersioningStrategy.acceptedTypes(accept)) {
+            WireFormat format = fromVendorType(mediaType);
+            if (format != null && VersioningStrategy.vendorVersion(mediaType) == apiVersion.getVersion()) {
+                return format;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,24 @@
+package com.aoher.web;
+
+import com.aoher.version.ApiVersion;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class ApiVersionArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return parameter.getParameterType() == ApiVersion.class;
+    }
+
+    @Override
+    public ApiVersion resolveArgument(final MethodParameter parameter, final ModelAndViewContainer mavContainer,
+                                      final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory) {
+        return ApiVersionRequestCondition.resolve(webRequest.getNativeRequest(HttpServletRequest.class));
+    }
+}
@@ -0,0 +1,254 @@
+package com.aoher.web;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersionedApi;
+import com.aoher.version.VersioningStrategy;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.condition.RequestCondition;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes {@link VersionedApi} handlers through a table built at startup and indexed by strategy,
+ * version, resource, path shape and HTTP method, so a versioned request is dispatched without
+ * evaluating pattern, header or produces conditions. Requests the table cannot answer (unknown
+ * versions, unusual Accept or Content-Type headers) fall back to regular request mapping, which
+ * also produces the usual 404/406/415 responses. The Accept header is parsed, so a route only
+ * answers when a range with a non-zero quality accepts what it produces; a range with quality 0 that
+ * matches leaves the decision to regular request mapping. Without the table, for comparison, every
+ * request goes through regular request mapping.
+ */
+public class ApiVersionHandlerMapping extends RequestMappingHandlerMapping {
+
+    private static final String ID_VARIABLE = "id";
+
+    private static final String ITEM_SUFFIX = "/{" + ID_VARIABLE + "}";
+
+    private static final RequestMethod[] METHODS = RequestMethod.values();
+
+    private static final int SHAPES = 2;
+
+    private static final int ROUTES_PER_RESOURCE =
+            VersioningStrategy.values().length * ValidVersion.values().length * SHAPES * METHODS.length;
+
+    private final Map<String, Route[]> routes = new HashMap<>();
+
+    private final boolean routeTable;
+
+    public ApiVersionHandlerMapping(final boolean routeTable) {
+        this.routeTable = routeTable;
+    }
+
+    @Override
+    protected RequestCondition<?> getCustomMethodCondition(final Method method) {
+        return isVersioned(method) ? new ApiVersionRequestCondition() : null;
+    }
+
+    @Override
+    protected void registerHandlerMethod(final Object handler, final Method method, final RequestMappingInfo mapping) {
+        super.registerHandlerMethod(handler, method, mapping);
+        if (isVersioned(method)
+                && mapping.getParamsCondition().isEmpty()
+                && mapping.getHeadersCondition().isEmpty()) {
+            HandlerMethod handlerMethod = getHandlerMethods().get(mapping);
+            for (String pattern : mapping.getPatternsCondition().getPatterns()) {
+                for (RequestMethod requestMethod : mapping.getMethodsCondition().getMethods()) {
+                    addRoute(pattern, requestMethod, new Route(handlerMethod, mapping, pattern));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected HandlerMethod lookupHandlerMethod(final String lookupPath, final HttpServletRequest request)
+            throws Exception {
+        Route route = routeTable ? findRoute(lookupPath, request) : null;
+        if (route == null) {
+            return super.lookupHandlerMethod(lookupPath, request);
+        }
+
+        request.setAttribute(BEST_MATCHING_HANDLER_ATTRIBUTE, route.handlerMethod);
+        request.setAttribute(PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, lookupPath);
+        request.setAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE, route.pattern);
+        Map<String, String> uriVariables = route.item
+                ? Collections.singletonMap(ID_VARIABLE, lookupPath.substring(lookupPath.lastIndexOf('/') + 1))
+                : Collections.emptyMap();
+        request.setAttribute(URI_TEMPLATE_VARIABLES_ATTRIBUTE, getUrlPathHelper().decodePathVariables(request, uriVariables));
+        if (!route.producible.isEmpty()) {
+            request.setAttribute(PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, route.producible);
+        }
+        return route.handlerMethod;
+    }
+
+    private Route findRoute(final String lookupPath, final HttpServletRequest request) {
+        VersioningStrategy strategy = VersioningStrategy.of(lookupPath);
+        if (strategy == null) {
+            return null;
+        }
+        ApiVersion apiVersion = ApiVersionRequestCondition.resolve(request);
+        RequestMethod requestMethod = requestMethod(request.getMethod());
+        if (apiVersion == null || requestMethod == null) {
+            return null;
+        }
+
+        int start = strategy.getPrefix().length();
+        if (strategy == VersioningStrategy.URL) {
+            start = lookupPath.indexOf('/', start) + 1;
+            if (start == 0) {
+                return null;
+            }
+        }
+        int slash = lookupPath.indexOf('/', start);
+        boolean item = slash >= 0;
+        if (item && (slash == lookupPath.length() - 1 || lookupPath.indexOf('/', slash + 1) >= 0)) {
+            return null;
+        }
+
+        Route[] resourceRoutes = routes.get(item ? lookupPath.substring(start, slash) : lookupPath.substring(start));
+        if (resourceRoutes == null) {
+            return null;
+        }
+        Route route = resourceRoutes[index(strategy, apiVersion.getVersion(), item, requestMethod)];
+        return route != null && route.accepts(apiVersion, request) ? route : null;
+    }
+
+    private void addRoute(final String pattern, final RequestMethod requestMethod, final Route route) {
+        VersioningStrategy strategy = VersioningStrategy.of(pattern);
+        if (strategy == null) {
+            return;
+        }
+        int start = strategy.getPrefix().length();
+        ValidVersion version = null;
+        if (strategy == VersioningStrategy.URL) {
+            int end = pattern.indexOf('/', start);
+            version = end < 0 ? null : ValidVersion.parse(pattern, start, end, false);
+            if (version == null) {
+                return;
+            }
+            start = end + 1;
+        }
+        String resource = pattern.substring(start);
+        if (route.item) {
+            resource = resource.substring(0, resource.length() - ITEM_SUFFIX.length());
+        }
+        if (resource.indexOf('/') >= 0 || resource.indexOf('{') >= 0) {
+            return;
+        }
+
+        Route[] resourceRoutes = routes.computeIfAbsent(resource, key -> new Route[ROUTES_PER_RESOURCE]);
+        for (ValidVersion routeVersion : ValidVersion.values()) {
+            if (version == null || version == routeVersion) {
+                resourceRoutes[index(strategy, routeVersion, route.item, requestMethod)] = route;
+            }
+        }
+    }
+
+    private static int index(final VersioningStrategy strategy, final ValidVersion version, final boolean item,
+                             final RequestMethod requestMethod) {
+        int index = strategy.ordinal() * ValidVersion.values().length + version.ordinal();
+        index = index * SHAPES + (item ? 1 : 0);
+        return index * METHODS.length + requestMethod.ordinal();
+    }
+
+    private static RequestMethod requestMethod(final String method) {
+        for (RequestMethod requestMethod : METHODS) {
+            if (requestMethod.name().equals(method)) {
+                return requestMethod;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVersioned(final Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, VersionedApi.class)
+                || AnnotatedElementUtils.hasAnnotation(method.getDeclaringClass(), VersionedApi.class);
+    }
+
+    /**
+     * Whether {@code accept} has a range with a non-zero quality compatible with {@code produced} and no
+     * compatible range with quality 0. Unparseable headers are left to regular request mapping.
+     */
+    private static boolean isAcceptable(final String accept, final MediaType produced) {
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        boolean acceptable = mediaTypes.isEmpty();
+        for (MediaType mediaType : mediaTypes) {
+            if (mediaType.isCompatibleWith(produced)) {
+                if (mediaType.getQualityValue() == 0) {
+                    return false;
+                }
+                acceptable = true;
+            }
+        }
+        return acceptable;
+    }
+
+    private static final class Route {
+
+        private final HandlerMethod handlerMethod;
+
+        private final String pattern;
+
+        private final boolean item;
+
+        private final Set<MediaType> producible;
+
+        private final Set<MediaType> consumable;
+
+        private Route(final HandlerMethod handlerMethod, final RequestMappingInfo mapping, final String pattern) {
+            this.handlerMethod = handlerMethod;
+            this.pattern = pattern;
+            this.item = pattern.endsWith(ITEM_SUFFIX);
+            this.producible = mapping.getProducesCondition().getProducibleMediaTypes();
+            this.consumable = mapping.getConsumesCondition().getConsumableMediaTypes();
+        }
+
+        private boolean accepts(final ApiVersion apiVersion, final HttpServletRequest request) {
+            if (!producible.isEmpty()) {
+                MediaType produced = producible.contains(apiVersion.getJsonMediaType())
+                        ? apiVersion.getJsonMediaType() : apiVersion.getNdjsonMediaType();
+                String accept = request.getHeader(HttpHeaders.ACCEPT);
+                if (accept != null && !isAcceptable(accept, produced)) {
+                    return false;
+                }
+            }
+            if (!consumable.isEmpty()) {
+                String contentType = request.getContentType();
+                if (contentType == null) {
+                    return false;
+                }
+                MediaType mediaType;
+                try {
+                    mediaType = MediaType.parseMediaType(contentType);
+                } catch (InvalidMediaTypeException e) {
+                    return false;
+                }
+                for (MediaType consumableType : consumable) {
+                    if (consumableType.includes(mediaType)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+}
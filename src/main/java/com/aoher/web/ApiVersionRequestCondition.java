@@ -0,0 +1,56 @@
+package com.aoher.web;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersioningStrategy;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.condition.RequestCondition;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Matches requests whose version can be resolved from the URL segment, the {@code X-API-Version}
+ * header or the vendor Accept type. The version is resolved once per request and kept as a request
+ * attribute for {@link ApiVersionArgumentResolver}.
+ */
+public class ApiVersionRequestCondition implements RequestCondition<ApiVersionRequestCondition> {
+
+    static final String API_VERSION_ATTRIBUTE = ApiVersion.class.getName();
+
+    private static final Object UNRESOLVED = new Object();
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    @Override
+    public ApiVersionRequestCondition combine(final ApiVersionRequestCondition other) {
+        return this;
+    }
+
+    @Override
+    public ApiVersionRequestCondition getMatchingCondition(final HttpServletRequest request) {
+        if (CorsUtils.isPreFlightRequest(request)) {
+            return this;
+        }
+        return resolve(request) == null ? null : this;
+    }
+
+    @Override
+    public int compareTo(final ApiVersionRequestCondition other, final HttpServletRequest request) {
+        return 0;
+    }
+
+    public static ApiVersion resolve(final HttpServletRequest request) {
+        Object resolved = request.getAttribute(API_VERSION_ATTRIBUTE);
+        if (resolved == null) {
+            String lookupPath = (String) request.getAttribute(HandlerMapping.LOOKUP_PATH);
+            if (lookupPath == null) {
+                lookupPath = URL_PATH_HELPER.getLookupPathForRequest(request);
+            }
+            ApiVersion apiVersion = VersioningStrategy.resolve(lookupPath, request::getHeader);
+            resolved = apiVersion == null ? UNRESOLVED : apiVersion;
+            request.setAttribute(API_VERSION_ATTRIBUTE, resolved);
+        }
+        return resolved == UNRESOLVED ? null : (ApiVersion) resolved;
+    }
+}
@@ -0,0 +1,113 @@
+package com.aoher.web;
+
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.Address;
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersionedParam;
+import com.aoher.version.VersioningStrategy;
+import com.aoher.version.WireFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.Conventions;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.validation.BindException;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.bind.ServletRequestDataBinder;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.http.HttpServletRequest;
+
+import static com.aoher.metrics.ApiMetrics.Stage.CONVERSION;
+import static com.aoher.metrics.ApiMetrics.Stage.VALIDATION;
+
+/**
+ * Binds the versioned param from form fields, or decodes it from the body when the content type is a
+ * vendor type such as {@code application/vnd.company.app-V1+cbor}, and validates it either way. A
+ * vendor body of another version than the one of the request is refused with 415.
+ */
+public class VersionedParamArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final ApiMetrics metrics;
+
+    private final AddressParamCodecs codecs;
+
+    public VersionedParamArgumentResolver(final ApiMetrics metrics, final AddressParamCodecs codecs) {
+        this.metrics = metrics;
+        this.codecs = codecs;
+    }
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(VersionedParam.class)
+                && parameter.getParameterType() == Address.class;
+    }
+
+    @Override
+    public Address resolveArgument(final MethodParameter parameter, final ModelAndViewContainer mavContainer,
+                                   final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory)
+            throws Exception {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        ApiVersion apiVersion = ApiVersionRequestCondition.resolve(request);
+        return bind(VersionedAddressConverter.forVersion(apiVersion.getVersion()), request, webRequest, binderFactory);
+    }
+
+    private <P> Address bind(final VersionedAddressConverter<P> converter, final HttpServletRequest request,
+                                    final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory)
+            throws Exception {
+        MediaType contentType = contentType(request);
+        WireFormat format = WireFormat.fromVendorType(contentType);
+        if (format != null && VersioningStrategy.vendorVersion(contentType) != converter.getVersion()) {
+            throw new HttpMediaTypeNotSupportedException(
+                    "content type " + contentType + " does not match version " + converter.getVersion());
+        }
+        P param;
+        if (format == null) {
+            param = BeanUtils.instantiateClass(converter.getParamType());
+        } else {
+            try {
+                param = codecs.decode(format, converter, request.getInputStream());
+            } catch (JsonProcessingException e) {
+                throw new HttpMessageNotReadableException("unreadable " + format.getSuffix() + " address",
+                        e, new ServletServerHttpRequest(request));
+            }
+        }
+        WebDataBinder binder = binderFactory.createBinder(webRequest, param, Conventions.getVariableName(param));
+        if (format == null) {
+            ((ServletRequestDataBinder) binder).bind(request);
+        }
+
+        long start = System.nanoTime();
+        binder.validate();
+        metrics.recordSince(VALIDATION, converter.getVersion(), start);
+        if (binder.getBindingResult().hasErrors()) {
+            throw new BindException(binder.getBindingResult());
+        }
+
+        start = System.nanoTime();
+        Address address = converter.fromParam(param);
+        metrics.recordSince(CONVERSION, converter.getVersion(), start);
+        return address;
+    }
+
+    private static MediaType contentType(final HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
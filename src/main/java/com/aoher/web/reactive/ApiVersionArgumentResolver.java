@@ -0,0 +1,21 @@
+package com.aoher.web.reactive;
+
+import com.aoher.version.ApiVersion;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.result.method.SyncHandlerMethodArgumentResolver;
+import org.springframework.web.server.ServerWebExchange;
+
+public class ApiVersionArgumentResolver implements SyncHandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return parameter.getParameterType() == ApiVersion.class;
+    }
+
+    @Override
+    public ApiVersion resolveArgumentValue(final MethodParameter parameter, final BindingContext bindingContext,
+                                           final ServerWebExchange exchange) {
+        return ApiVersionRequestCondition.resolve(exchange);
+    }
+}
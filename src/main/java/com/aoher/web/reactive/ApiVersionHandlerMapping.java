@@ -0,0 +1,22 @@
+package com.aoher.web.reactive;
+
+import com.aoher.version.VersionedApi;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.reactive.result.condition.RequestCondition;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+
+/**
+ * Adds {@link ApiVersionRequestCondition} to {@link VersionedApi} handlers. Unlike the servlet
+ * mapping there is no route table; WebFlux already matches against pre-parsed path patterns.
+ */
+public class ApiVersionHandlerMapping extends RequestMappingHandlerMapping {
+
+    @Override
+    protected RequestCondition<?> getCustomMethodCondition(final Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, VersionedApi.class)
+                || AnnotatedElementUtils.hasAnnotation(method.getDeclaringClass(), VersionedApi.class)
+                ? new ApiVersionRequestCondition() : null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.aoher.web.reactive;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersioningStrategy;
+import org.springframework.web.cors.reactive.CorsUtils;
+import org.springframework.web.reactive.result.condition.RequestCondition;
+import org.springframework.web.server.ServerWebExchange;
+
+/**
+ * Reactive counterpart of {@link com.aoher.web.ApiVersionRequestCondition}. The version is resolved
+ * once per exchange and kept as an exchange attribute for {@link ApiVersionArgumentResolver}.
+ */
+public class ApiVersionRequestCondition implements RequestCondition<ApiVersionRequestCondition> {
+
+    static final String API_VERSION_ATTRIBUTE = ApiVersion.class.getName();
+
+    private static final Object UNRESOLVED = new Object();
+
+    @Override
+    public ApiVersionRequestCondition combine(final ApiVersionRequestCondition other) {
+        return this;
+    }
+
+    @Override
+    public ApiVersionRequestCondition getMatchingCondition(final ServerWebExchange exchange) {
+        if (CorsUtils.isPreFlightRequest(exchange.getRequest())) {
+            return this;
+        }
+        return resolve(exchange) == null ? null : this;
+    }
+
+    @Override
+    public int compareTo(final ApiVersionRequestCondition other, final ServerWebExchange exchange) {
+        return 0;
+    }
+
+    public static ApiVersion resolve(final ServerWebExchange exchange) {
+        Object resolved = exchange.getAttributes().computeIfAbsent(API_VERSION_ATTRIBUTE, name -> {
+            ApiVersion apiVersion = VersioningStrategy.resolve(
+                    exchange.getRequest().getPath().pathWithinApplication().value(),
+                    exchange.getRequest().getHeaders()::getFirst);
+            return apiVersion == null ? UNRESOLVED : apiVersion;
+        });
+        return resolved == UNRESOLVED ? null : (ApiVersion) resolved;
+    }
+}
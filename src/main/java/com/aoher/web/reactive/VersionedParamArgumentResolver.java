@@ -0,0 +1,121 @@
+package com.aoher.web.reactive;
+
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.Address;
+import com.aoher.version.ApiVersion;
+import com.aoher.version.VersionedParam;
+import com.aoher.version.VersioningStrategy;
+import com.aoher.version.WireFormat;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.Conventions;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.bind.support.WebExchangeDataBinder;
+import org.springframework.web.reactive.BindingContext;
+import org.springframework.web.reactive.result.method.HandlerMethodArgumentResolver;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.server.UnsupportedMediaTypeStatusException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.aoher.metrics.ApiMetrics.Stage.CONVERSION;
+import static com.aoher.metrics.ApiMetrics.Stage.VALIDATION;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Binds the versioned param from form fields, or decodes it from the body when the content type is a
+ * vendor type such as {@code application/vnd.company.app-V1+cbor}, and validates it either way. A
+ * vendor body of another version than the one of the request is refused with 415.
+ */
+public class VersionedParamArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final ApiMetrics metrics;
+
+    private final AddressParamCodecs codecs;
+
+    public VersionedParamArgumentResolver(final ApiMetrics metrics, final AddressParamCodecs codecs) {
+        this.metrics = metrics;
+        this.codecs = codecs;
+    }
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(VersionedParam.class)
+                && parameter.getParameterType() == Address.class;
+    }
+
+    @Override
+    public Mono<Object> resolveArgument(final MethodParameter parameter, final BindingContext bindingContext,
+                                        final ServerWebExchange exchange) {
+        ApiVersion apiVersion = ApiVersionRequestCondition.resolve(exchange);
+        return bind(VersionedAddressConverter.forVersion(apiVersion.getVersion()), parameter, bindingContext,
+                exchange);
+    }
+
+    private <P> Mono<Object> bind(final VersionedAddressConverter<P> converter, final MethodParameter parameter,
+                                  final BindingContext bindingContext, final ServerWebExchange exchange) {
+        MediaType contentType = contentType(exchange);
+        WireFormat format = WireFormat.fromVendorType(contentType);
+        if (format != null && VersioningStrategy.vendorVersion(contentType) != converter.getVersion()) {
+            return Mono.error(new UnsupportedMediaTypeStatusException(
+                    "content type " + contentType + " does not match version " + converter.getVersion()));
+        }
+        Mono<P> decoded = format == null
+                ? Mono.fromSupplier(() -> BeanUtils.instantiateClass(converter.getParamType()))
+                : DataBufferUtils.join(exchange.getRequest().getBody())
+                .map(body -> decode(format, converter, body))
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("empty " + format.getSuffix() + " address")));
+        return decoded.flatMap(param -> validate(converter, format, param, parameter, bindingContext, exchange));
+    }
+
+    private <P> Mono<Object> validate(final VersionedAddressConverter<P> converter, final WireFormat format,
+                                      final P param, final MethodParameter parameter,
+                                      final BindingContext bindingContext, final ServerWebExchange exchange) {
+        WebExchangeDataBinder binder = bindingContext.createDataBinder(exchange, param,
+                Conventions.getVariableName(param));
+        Mono<Void> bound = format == null ? binder.bind(exchange) : Mono.empty();
+        return bound.then(Mono.fromCallable(() -> {
+            long start = System.nanoTime();
+            binder.validate();
+            metrics.recordSince(VALIDATION, converter.getVersion(), start);
+            if (binder.getBindingResult().hasErrors()) {
+                throw new WebExchangeBindException(parameter, binder.getBindingResult());
+            }
+
+            start = System.nanoTime();
+            Address address = converter.fromParam(param);
+            metrics.recordSince(CONVERSION, converter.getVersion(), start);
+            return address;
+        }));
+    }
+
+    private <P> P decode(final WireFormat format, final VersionedAddressConverter<P> converter,
+                         final DataBuffer body) {
+        try (InputStream in = body.asInputStream(true)) {
+            return codecs.decode(format, converter, in);
+        } catch (IOException e) {
+            throw new ServerWebInputException("unreadable " + format.getSuffix() + " address", null, e);
+        }
+    }
+
+    private static MediaType contentType(final ServerWebExchange exchange) {
+        String contentType = exchange.getRequest().getHeaders().getFirst(CONTENT_TYPE);
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
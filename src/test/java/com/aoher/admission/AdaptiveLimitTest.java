@@ -0,0 +1,81 @@
+package com.aoher.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AdaptiveLimit limit = new AdaptiveLimit(10, 2, 50, 2.0);
+
+    @Test
+    public void should_grow_to_the_maximum_while_used_at_a_steady_latency() {
+        for (int i = 0; i < 200; i++) {
+            fill(limit.getLimit(), RTT);
+        }
+        assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    public void should_not_grow_while_mostly_unused() {
+        for (int i = 0; i < 200; i++) {
+            fill(2, RTT);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void should_shrink_to_the_minimum_when_latency_rises_beyond_tolerance() {
+        for (int i = 0; i < 50; i++) {
+            fill(limit.getLimit(), RTT);
+        }
+        int settled = limit.getLimit();
+        fill(limit.getLimit(), 10 * RTT);
+        assertTrue(limit.getLimit() < settled);
+        for (int i = 0; i < 20; i++) {
+            fill(limit.getLimit(), 10 * RTT);
+        }
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void should_shrink_after_a_slow_first_request_once_latency_rises() {
+        fill(1, 50 * RTT);
+        for (int i = 0; i < 20; i++) {
+            fill(limit.getLimit(), RTT);
+        }
+        int settled = limit.getLimit();
+        fill(limit.getLimit(), 10 * RTT);
+        assertTrue(limit.getLimit() < settled);
+    }
+
+    @Test
+    public void should_keep_reserved_permits_free() {
+        for (int i = 0; i < 8; i++) {
+            assertTrue(limit.tryAcquire(2));
+        }
+        assertFalse(limit.tryAcquire(2));
+        assertTrue(limit.tryAcquire(0));
+        assertTrue(limit.tryAcquire(0));
+        assertFalse(limit.tryAcquire(0));
+        assertEquals(10, limit.getInFlight());
+    }
+
+    /**
+     * Takes {@code permits} permits and releases them after {@code rttNanos}.
+     */
+    private void fill(final int permits, final long rttNanos) {
+        for (int i = 0; i < permits; i++) {
+            assertTrue(limit.tryAcquire(0));
+        }
+        for (int i = 0; i < permits; i++) {
+            limit.release(rttNanos);
+        }
+    }
+}
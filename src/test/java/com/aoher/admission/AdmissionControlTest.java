@@ -0,0 +1,25 @@
+package com.aoher.admission;
+
+import com.aoher.version.ApiVersion;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControlTest {
+
+    private static final ApiVersion V1 = ApiVersion.of(VersioningStrategy.URL, ValidVersion.V1);
+
+    @Test
+    public void should_admit_the_deprioritized_kind_at_the_minimum_limit_while_idle() {
+        AdmissionControl admission = new AdmissionControl(new SimpleMeterRegistry(), 1, 1, 1, 2.0, "reads", 0.2, 1);
+
+        assertTrue(admission.tryAcquire(V1, true));
+        assertFalse(admission.tryAcquire(V1, false));
+        admission.release(V1);
+        assertTrue(admission.tryAcquire(V1, false));
+    }
+}
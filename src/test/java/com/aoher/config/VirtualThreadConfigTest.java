@@ -0,0 +1,52 @@
+package com.aoher.config;
+
+import com.aoher.App;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadConfigTest {
+
+    private static final boolean VIRTUAL_THREADS = Runtime.version().feature() >= 21;
+
+    @Test
+    public void should_run_tomcat_on_virtual_threads_until_closed() {
+        assumeTrue(VIRTUAL_THREADS);
+        Executor executor;
+        try (ConfigurableApplicationContext context = start()) {
+            TomcatWebServer webServer = (TomcatWebServer) ((WebServerApplicationContext) context).getWebServer();
+            executor = webServer.getTomcat().getConnector().getProtocolHandler().getExecutor();
+            assertThat(executor.getClass().getName(), containsString("ThreadPerTaskExecutor"));
+        }
+        assertTrue(((ExecutorService) executor).isShutdown());
+    }
+
+    @Test
+    public void should_refuse_to_start_without_virtual_threads() {
+        assumeTrue(!VIRTUAL_THREADS);
+        try (ConfigurableApplicationContext ignored = start()) {
+            fail("started without virtual threads");
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertThat(e.toString() + cause, containsString("requires JDK 21"));
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(App.class).run("--server.port=0", "--address.virtual-threads=true");
+    }
+}
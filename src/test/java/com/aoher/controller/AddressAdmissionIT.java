@@ -0,0 +1,169 @@
+package com.aoher.controller;
+
+import com.aoher.admission.AdmissionControl;
+import com.aoher.model.Address;
+import com.aoher.service.AddressService;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Floods V1 with far more concurrent reads than there are request threads, against a backend that serves
+ * {@value #CAPACITY} reads at a time in {@value #LATENCY_MILLIS} ms each and queues the rest, and measures
+ * V2 reads before and during the flood. The V1 limit starts at {@value #INITIAL_LIMIT} with the default
+ * maximum far above it; as the flood queues up at the backend, V1 latency rises and its limit has to
+ * shrink on its own. Without that, a V2 read would queue behind every flooder, for {@value #FLOODERS}
+ * / {@value #CAPACITY} times the backend latency, and the test requires the median to stay below half
+ * of that.
+ * {@link AddressAdmissionReactiveIT} runs it on the reactive stack.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "address.admission.enabled=true", "address.admission.initial-limit=" + AddressAdmissionIT.INITIAL_LIMIT,
+        "address.repository.simulated=true", "address.repository.latency-ms=" + AddressAdmissionIT.LATENCY_MILLIS,
+        "address.repository.capacity=" + AddressAdmissionIT.CAPACITY, "server.tomcat.max-threads=64"})
+public class AddressAdmissionIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddressAdmissionIT.class);
+
+    static final int INITIAL_LIMIT = 16;
+
+    static final int LATENCY_MILLIS = 50;
+
+    static final int CAPACITY = 4;
+
+    private static final int FLOODERS = 48;
+
+    private static final int SAMPLES = 30;
+
+    private static final long RETRY_MILLIS = 10;
+
+    private static final long ADAPT_MILLIS = 2000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    public void should_shrink_the_v1_limit_and_keep_v2_fast_while_v1_is_overloaded() throws Exception {
+        addressService.save("admission", new Address("12043", "Berlin"));
+        for (int i = 0; i < FLOODERS; i++) {
+            addressService.save("admission-" + i, new Address("12043", "Berlin"));
+        }
+        median(ValidVersion.V1);
+        long baseline = median(ValidVersion.V2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(FLOODERS);
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        List<Future<int[]>> flooders = new ArrayList<>();
+        for (int i = 0; i < FLOODERS; i++) {
+            String id = "admission-" + i;
+            flooders.add(executor.submit(() -> flood(id, flooding)));
+        }
+        double lowestLimit = INITIAL_LIMIT;
+        for (long waited = 0; waited < ADAPT_MILLIS; waited += LATENCY_MILLIS) {
+            Thread.sleep(LATENCY_MILLIS);
+            lowestLimit = Math.min(lowestLimit, v1Limit());
+        }
+        long loaded = median(ValidVersion.V2);
+        flooding.set(false);
+        int served = 0;
+        int rejected = 0;
+        for (Future<int[]> flooder : flooders) {
+            int[] counts = flooder.get(10, TimeUnit.SECONDS);
+            served += counts[0];
+            rejected += counts[1];
+        }
+        executor.shutdown();
+
+        LOG.info("{} admission: V2 median {} ms idle, {} ms with V1 overloaded; V1 limit down to {}, served {}, "
+                        + "rejected {}", ((WebServerApplicationContext) context).getWebServer().getClass().getSimpleName(),
+                baseline, loaded, lowestLimit, served, rejected);
+        assertTrue("no V1 request was rejected", rejected > 0);
+        assertEquals(rejected, meterRegistry.get(AdmissionControl.REJECTED).tag("strategy", "url")
+                .tag("version", "V1").tag("kind", "read").counter().count(), 0);
+        assertTrue("V1 limit only went down to " + lowestLimit, lowestLimit <= INITIAL_LIMIT / 2);
+        assertTrue("V2 median rose from " + baseline + " to " + loaded + " ms",
+                loaded < FLOODERS / CAPACITY * LATENCY_MILLIS / 2);
+    }
+
+    /**
+     * Reads {@code id}, which no other flooder reads so that the backend sees every call, without pause
+     * and retries after {@value #RETRY_MILLIS} ms instead of the second asked for,
+     * returning the counts of served and rejected reads.
+     */
+    private int[] flood(final String id, final AtomicBoolean flooding) throws Exception {
+        int[] counts = new int[2];
+        HttpRequest request = request(ValidVersion.V1, id);
+        while (flooding.get()) {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 503) {
+                assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+                counts[1]++;
+                Thread.sleep(RETRY_MILLIS);
+            } else {
+                assertEquals(200, response.statusCode());
+                counts[0]++;
+            }
+        }
+        return counts;
+    }
+
+    private double v1Limit() {
+        return meterRegistry.get(AdmissionControl.LIMIT).tag("strategy", "url").tag("version", "V1").gauge().value();
+    }
+
+    private long median(final ValidVersion version) throws Exception {
+        long[] millis = new long[SAMPLES];
+        HttpRequest request = request(version, "admission");
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+            millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        Arrays.sort(millis);
+        return millis[SAMPLES / 2];
+    }
+
+    private HttpRequest request(final ValidVersion version, final String id) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + VersioningStrategy.URL.getPrefix()
+                + version + "/address/" + id)).build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.aoher.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive",
+        "address.admission.enabled=true", "address.admission.initial-limit=" + AddressAdmissionIT.INITIAL_LIMIT,
+        "address.repository.simulated=true", "address.repository.latency-ms=" + AddressAdmissionIT.LATENCY_MILLIS,
+        "address.repository.capacity=" + AddressAdmissionIT.CAPACITY})
+public class AddressAdmissionReactiveIT extends AddressAdmissionIT {
+}
@@ -1,36 +1,102 @@
 package com.aoher.controller;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertEquals;
 
+import com.aoher.cache.AddressResponseCache;
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.converter.AddressParamConverter;
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.exception.PreconditionFailedException;
+import com.aoher.metrics.ApiMetrics;
 import com.aoher.model.Address;
+import com.aoher.service.AddressChangeFeed;
 import com.aoher.service.AddressService;
+import com.aoher.version.AddressParamV1;
+import com.aoher.version.AddressParamV2;
 import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import com.aoher.version.WireFormat;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.aoher.util.Constants.LAST_EVENT_ID_HEADER;
+import static com.aoher.util.Constants.WRITE_TOKEN_HEADER;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpHeaders.ACCEPT;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.HttpStatus.UNSUPPORTED_MEDIA_TYPE;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN;
+import static org.springframework.web.reactive.function.BodyInserters.fromFormData;
 
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
-import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
-
+/**
+ * Runs over HTTP against the servlet stack; {@link AddressReactiveIT} runs the same tests against
+ * the reactive stack and {@link AddressAsyncWriteIT} with queued saves.
+ */
 @RunWith(SpringRunner.class)
-@SpringBootTest
-@AutoConfigureMockMvc
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@TestPropertySource(properties = "address.import.directory=" + AddressIT.IMPORT_DIRECTORY)
 public class AddressIT {
 
+    static final String IMPORT_DIRECTORY = "target/import-it";
+
     private static final String GET_ADDRESS_URL = "/apiurl/%s/address";
     private static final String GET_HEADER_URL = "/apiheader/address";
     private static final String GET_ADDRESS_ACCEPT_URL = "/apiaccept/address";
+    private static final String ADDRESS_BY_ID_SUFFIX = "/%s";
+    private static final String BATCH_URL = "/apiurl/%s/addresses";
+    private static final String BATCH_HEADER_URL = "/apiheader/addresses";
+    private static final String BATCH_ACCEPT_URL = "/apiaccept/addresses";
+    private static final String ZIP_QUERY_URL = "/apiurl/%s/addresses/zip";
+    private static final String ZIP_QUERY_HEADER_URL = "/apiheader/addresses/zip";
+    private static final String ZIP_QUERY_ACCEPT_URL = "/apiaccept/addresses/zip";
+    private static final String TOWN_COMPLETION_URL = "/apiurl/%s/addresses/town";
+    private static final String TOWN_COMPLETION_HEADER_URL = "/apiheader/addresses/town";
+    private static final String IMPORT_URL = "/apiurl/%s/addresses/import";
+    private static final String CHANGES_URL = "/apiurl/%s/addresses/changes";
+    private static final String CHANGES_ACCEPT_URL = "/apiaccept/addresses/changes";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String APPLICATION_ACCEPT_VND_AND_NDJSON = "application/vnd.company.app-%s+ndjson";
+    private static final String UNKNOWN_ID = "unknown";
 
     private static final String PARAM_ADDRESS = "address";
     private static final String PARAM_ZIP = "zip";
@@ -45,12 +111,29 @@ public class AddressIT {
     private static final String API_VERSION = "X-API-Version";
     private static final String UNSUPPORTED_VERSION = "V13";
 
+    private static final int PROMETHEUS_MAX_BYTES = 16 * 1024 * 1024;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENT =
+            new ParameterizedTypeReference<ServerSentEvent<String>>() {
+            };
+
+    private static final Duration EVENT_TIMEOUT = Duration.ofSeconds(10);
+
     @Autowired
-    private MockMvc mockMvc;
+    private WebTestClient webTestClient;
 
     @Autowired
     private AddressService addressService;
 
+    @Autowired
+    private AddressResponseCache responseCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AddressParamCodecs codecs;
+
     private Address address;
 
     @Before
@@ -60,160 +143,973 @@ public class AddressIT {
     }
 
     @Test
-    public void should_respond_with_address_json_on_v1_url() throws Exception {
-        mockMvc.perform(
-                get(format(GET_ADDRESS_URL, ValidVersion.V1))
-                        .accept(APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(APPLICATION_JSON))
-                .andExpect(jsonPath(JSON_PATH_ADDRESS, is(getAddress(address))));
+    public void should_respond_with_address_json_on_v1_url() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody()
+                .jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address))
+                .jsonPath("$.parsed").doesNotExist();
     }
 
     @Test
-    public void should_respond_with_address_json_on_v2_url() throws Exception {
-        mockMvc.perform(
-                get(format(GET_ADDRESS_URL, ValidVersion.V2))
-                        .accept(APPLICATION_JSON))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(APPLICATION_JSON))
-                .andExpect(jsonPath(JSON_PATH_ZIP, is(address.getZip())))
-                .andExpect(jsonPath(JSON_PATH_TOWN, is(address.getTown())));
+    public void should_respond_with_address_json_on_v2_url() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V2))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(address.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
     }
 
     @Test
-    public void should_respond_with_404_on_v3_url() throws Exception {
-        mockMvc.perform(
-                get(format(GET_ADDRESS_URL, UNSUPPORTED_VERSION))
-                        .accept(APPLICATION_JSON))
-                .andExpect(status().isNotFound());
+    public void should_respond_with_404_on_v3_url() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL, UNSUPPORTED_VERSION))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound();
     }
 
     @Test
-    public void should_respond_with_created_on_v1_url() throws Exception {
-        mockMvc.perform(
-                post(format(GET_ADDRESS_URL, ValidVersion.V1))
-                        .param(PARAM_ADDRESS, getAddress(address)))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_not_acceptable_for_text_on_v1_url() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .accept(TEXT_PLAIN)
+                .exchange()
+                .expectStatus().isEqualTo(406);
     }
 
     @Test
-    public void should_respond_with_created_on_v2_url() throws Exception {
-        mockMvc.perform(
-                post(format(GET_ADDRESS_URL, ValidVersion.V2))
-                        .param(PARAM_ZIP, address.getZip())
-                        .param(PARAM_TOWN, address.getTown()))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_created_on_v1_url() {
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .body(fromFormData(PARAM_ADDRESS, getAddress(address)))
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    public void should_respond_with_created_on_v2_url() {
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V2))
+                .body(fromFormData(PARAM_ZIP, address.getZip()).with(PARAM_TOWN, address.getTown()))
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_invalid_v1_address() {
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .body(fromFormData(PARAM_ADDRESS, "not an address"))
+                .exchange()
+                .expectStatus().isBadRequest();
     }
 
     /* ------------------------------------------------------------------- */
 
     @Test
-    public void should_respond_with_hello_json_with_v1_header() throws Exception {
-        mockMvc.perform(
-                get(GET_HEADER_URL)
-                        .accept(APPLICATION_JSON)
-                        .header(API_VERSION, ValidVersion.V1))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(APPLICATION_JSON))
-                .andExpect(jsonPath(JSON_PATH_ADDRESS, is(getAddress(address))));
+    public void should_respond_with_hello_json_with_v1_header() {
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V1.name())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
     }
 
     @Test
-    public void should_respond_with_hello_json_with_v2_header() throws Exception {
-        mockMvc.perform(
-                get(GET_HEADER_URL)
-                        .accept(APPLICATION_JSON)
-                        .header(API_VERSION, ValidVersion.V2))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(APPLICATION_JSON))
-                .andExpect(jsonPath(JSON_PATH_ZIP, is(address.getZip())))
-                .andExpect(jsonPath(JSON_PATH_TOWN, is(address.getTown())));
+    public void should_respond_with_hello_json_with_v2_header() {
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(address.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
     }
 
     @Test
-    public void should_respond_with_bad_request_with_v3_header() throws Exception {
-        mockMvc.perform(
-                get(GET_HEADER_URL)
-                        .accept(APPLICATION_JSON)
-                        .header(API_VERSION, UNSUPPORTED_VERSION))
-                .andExpect(status().isNotFound());
+    public void should_respond_with_bad_request_with_v3_header() {
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, UNSUPPORTED_VERSION)
+                .exchange()
+                .expectStatus().isNotFound();
     }
 
     @Test
-    public void should_respond_with_bad_request_without_version_header() throws Exception {
-        mockMvc.perform(
-                get(GET_HEADER_URL)
-                        .accept(APPLICATION_JSON))
-                .andExpect(status().isNotFound());
+    public void should_respond_with_bad_request_without_version_header() {
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound();
     }
 
     @Test
-    public void should_respond_with_created_with_v1_header() throws Exception {
-        mockMvc.perform(
-                post(GET_HEADER_URL)
-                        .header(API_VERSION, ValidVersion.V1)
-                        .param(PARAM_ADDRESS, getAddress(address)))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_created_with_v1_header() {
+        webTestClient.post().uri(GET_HEADER_URL)
+                .header(API_VERSION, ValidVersion.V1.name())
+                .body(fromFormData(PARAM_ADDRESS, getAddress(address)))
+                .exchange()
+                .expectStatus().isAccepted();
     }
 
     @Test
-    public void should_respond_with_created_with_v2_header() throws Exception {
-        mockMvc.perform(
-                post(GET_HEADER_URL)
-                        .header(API_VERSION, ValidVersion.V2)
-                        .param(PARAM_ZIP, address.getZip())
-                        .param(PARAM_TOWN, address.getTown()))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_created_with_v2_header() {
+        webTestClient.post().uri(GET_HEADER_URL)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .body(fromFormData(PARAM_ZIP, address.getZip()).with(PARAM_TOWN, address.getTown()))
+                .exchange()
+                .expectStatus().isAccepted();
     }
 
     /* ------------------------------------------------------------------- */
 
     @Test
-    public void should_respond_with_hello_json_with_v1_accept() throws Exception {
-        mockMvc.perform(
-                get(GET_ADDRESS_ACCEPT_URL)
-                        .accept(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V1)))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V1)))
-                .andExpect(jsonPath(JSON_PATH_ADDRESS, is(getAddress(address))));
+    public void should_respond_with_hello_json_with_v1_accept() {
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V1.name()))
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
+    }
+
+    @Test
+    public void should_respond_with_hello_json_with_v2_accept() {
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V2.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V2.name()))
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(address.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
     }
 
     @Test
-    public void should_respond_with_hello_json_with_v2_accept() throws Exception {
-        mockMvc.perform(
-                get(GET_ADDRESS_ACCEPT_URL)
-                        .accept(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V2)))
-                .andExpect(status().isOk())
-                .andExpect(content().contentType(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V2)))
-                .andExpect(jsonPath(JSON_PATH_ZIP, is(address.getZip())))
-                .andExpect(jsonPath(JSON_PATH_TOWN, is(address.getTown())));
+    public void should_respond_with_not_acceptable_for_a_type_that_only_contains_json_on_v1_url() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .header(ACCEPT, "application/json-patch+json")
+                .exchange()
+                .expectStatus().isEqualTo(406);
     }
 
     @Test
-    public void should_respond_with_not_acceptable_with_v3_accept() throws Exception {
-        mockMvc.perform(
-                get(GET_ADDRESS_ACCEPT_URL)
-                        .accept(format(APPLICATION_ACCEPT_VND_AND_JSON, UNSUPPORTED_VERSION)))
-                .andExpect(status().isNotAcceptable());
+    public void should_respond_with_not_acceptable_with_v3_accept() {
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(UNSUPPORTED_VERSION))
+                .exchange()
+                .expectStatus().isEqualTo(406);
     }
 
     @Test
-    public void should_respond_with_created_with_v1_accept() throws Exception {
-        mockMvc.perform(
-                post(GET_ADDRESS_ACCEPT_URL)
-                        .accept(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V1))
-                        .param(PARAM_ADDRESS, getAddress(address)))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_created_with_v1_accept() {
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .body(fromFormData(PARAM_ADDRESS, getAddress(address)))
+                .exchange()
+                .expectStatus().isAccepted();
     }
 
     @Test
-    public void should_respond_with_created_with_v2_accept() throws Exception {
-        mockMvc.perform(
-                post(GET_ADDRESS_ACCEPT_URL)
-                        .accept(format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V2))
-                        .param(PARAM_ZIP, address.getZip())
-                        .param(PARAM_TOWN, address.getTown()))
-                .andExpect(status().isAccepted());
+    public void should_respond_with_created_with_v2_accept() {
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V2.name()))
+                .body(fromFormData(PARAM_ZIP, address.getZip()).with(PARAM_TOWN, address.getTown()))
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    /* ------------------------------------------------------------------- */
+
+    @Test
+    public void should_share_keyed_address_across_versioning_strategies() {
+        String id = "keyed";
+        Address keyed = new Address("10115", "Mitte");
+
+        String token = webTestClient.post().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V2, id))
+                .body(fromFormData(PARAM_ZIP, keyed.getZip()).with(PARAM_TOWN, keyed.getTown()))
+                .exchange()
+                .expectStatus().isAccepted()
+                .returnResult(Void.class).getResponseHeaders().getFirst(WRITE_TOKEN_HEADER);
+
+        webTestClient.get().uri(format(GET_HEADER_URL + ADDRESS_BY_ID_SUFFIX, id))
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V1.name())
+                .header(WRITE_TOKEN_HEADER, token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(keyed));
+
+        webTestClient.get().uri(format(GET_ADDRESS_ACCEPT_URL + ADDRESS_BY_ID_SUFFIX, id))
+                .accept(vendorJson(ValidVersion.V2.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(keyed.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(keyed.getTown());
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
+    }
+
+    @Test
+    public void should_respond_with_404_for_unknown_id() {
+        webTestClient.get().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V1, UNKNOWN_ID))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void should_bind_dotted_ids_whole_on_routed_and_regular_mapping() throws IOException {
+        String id = "dotted.json";
+        Address dotted = new Address("14467", "Potsdam");
+        addressService.save(id, dotted);
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V1, id))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(dotted));
+
+        byte[] cbor = webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL + format(ADDRESS_BY_ID_SUFFIX, id))
+                .accept(vendorType(ValidVersion.V1.name(), WireFormat.CBOR))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody();
+        assertEquals(getAddress(dotted), codecs.decode(WireFormat.CBOR, v1Converter(), cbor).getAddress());
+    }
+
+    @Test
+    public void should_respond_with_unsupported_media_type_for_malformed_content_type() {
+        webTestClient.post().uri(format(BATCH_URL, ValidVersion.V1))
+                .header(CONTENT_TYPE, "json")
+                .exchange()
+                .expectStatus().isEqualTo(UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void should_serve_repeated_reads_from_response_cache() {
+        long hits = responseCache.getHits();
+        long misses = responseCache.getMisses();
+
+        for (int i = 0; i < 3; i++) {
+            webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                    .accept(APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
+        }
+
+        assertEquals(misses + 1, responseCache.getMisses());
+        assertEquals(hits + 2, responseCache.getHits());
+    }
+
+    @Test
+    public void should_serve_fresh_body_after_save() {
+        Address updated = new Address("80331", "Muenchen");
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V2))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectBody().jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
+
+        String token = webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .body(fromFormData(PARAM_ADDRESS, getAddress(updated)))
+                .exchange()
+                .expectStatus().isAccepted()
+                .returnResult(Void.class).getResponseHeaders().getFirst(WRITE_TOKEN_HEADER);
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V2))
+                .accept(APPLICATION_JSON)
+                .header(WRITE_TOKEN_HEADER, token)
+                .exchange()
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(updated.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(updated.getTown());
+    }
+
+    @Test
+    public void should_negotiate_binary_vendor_types_per_version() throws Exception {
+        for (WireFormat format : WireFormat.values()) {
+            byte[] v1 = webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                    .accept(vendorType(ValidVersion.V1.name(), format))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(vendorType(ValidVersion.V1.name(), format))
+                    .expectHeader().valueEquals(ETAG, etag(ValidVersion.V1, format))
+                    .expectBody().returnResult().getResponseBody();
+            AddressParamV1 paramV1 = codecs.decode(format, v1Converter(), v1);
+            assertEquals(getAddress(address), paramV1.getAddress());
+
+            byte[] v2 = webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                    .accept(vendorType(ValidVersion.V2.name(), format))
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(vendorType(ValidVersion.V2.name(), format))
+                    .expectBody().returnResult().getResponseBody();
+            AddressParamV2 paramV2 = codecs.decode(format, v2Converter(), v2);
+            assertEquals(address.getZip(), paramV2.getZip());
+            assertEquals(address.getTown(), paramV2.getTown());
+        }
+    }
+
+    @Test
+    public void should_save_binary_vendor_bodies() throws Exception {
+        Address updated = new Address("01067", "Dresden");
+        for (WireFormat format : WireFormat.values()) {
+            String id = "binary-" + format.getSuffix();
+            AddressParamV2 param = AddressParamConverter.convertToV2(updated);
+            String token = webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL + format(ADDRESS_BY_ID_SUFFIX, id))
+                    .accept(vendorType(ValidVersion.V2.name(), format))
+                    .contentType(vendorType(ValidVersion.V2.name(), format))
+                    .bodyValue(codecs.encode(format, ValidVersion.V2, param))
+                    .exchange()
+                    .expectStatus().isAccepted()
+                    .returnResult(Void.class).getResponseHeaders().getFirst(WRITE_TOKEN_HEADER);
+
+            webTestClient.get().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V1, id))
+                    .accept(APPLICATION_JSON)
+                    .header(WRITE_TOKEN_HEADER, token)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(updated));
+        }
+
+        AddressParamV1 invalid = new AddressParamV1();
+        invalid.setAddress("not an address");
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorType(ValidVersion.V1.name(), WireFormat.CBOR))
+                .contentType(vendorType(ValidVersion.V1.name(), WireFormat.CBOR))
+                .bodyValue(codecs.encode(WireFormat.CBOR, ValidVersion.V1, invalid))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorType(ValidVersion.V1.name(), WireFormat.SMILE))
+                .contentType(vendorType(ValidVersion.V1.name(), WireFormat.SMILE))
+                .bodyValue(new byte[]{1, 2, 3})
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void should_resolve_the_version_of_the_preferred_vendor_type() {
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .header(ACCEPT, vendorJson(ValidVersion.V1.name()) + ";q=0, " + vendorJson(ValidVersion.V2.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V2.name()))
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(address.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
+
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .header(ACCEPT, vendorJson(ValidVersion.V1.name()) + ";q=0.1, " + vendorJson(ValidVersion.V2.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V2.name()))
+                .expectBody()
+                .jsonPath(JSON_PATH_ZIP).isEqualTo(address.getZip())
+                .jsonPath(JSON_PATH_TOWN).isEqualTo(address.getTown());
+    }
+
+    @Test
+    public void should_skip_vendor_types_refused_with_quality_zero() {
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .header(ACCEPT, vendorType(ValidVersion.V1.name(), WireFormat.CBOR) + ";q=0, "
+                        + vendorJson(ValidVersion.V1.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V1.name()))
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
+
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .header(ACCEPT, vendorJson(ValidVersion.V1.name()) + ";q=0.5, "
+                        + vendorType(ValidVersion.V1.name(), WireFormat.SMILE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorType(ValidVersion.V1.name(), WireFormat.SMILE));
+    }
+
+    @Test
+    public void should_respond_with_unsupported_media_type_for_body_of_another_version() throws Exception {
+        AddressParamV2 param = AddressParamConverter.convertToV2(new Address("01067", "Dresden"));
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL + format(ADDRESS_BY_ID_SUFFIX, "mismatch"))
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .contentType(vendorType(ValidVersion.V2.name(), WireFormat.CBOR))
+                .bodyValue(codecs.encode(WireFormat.CBOR, ValidVersion.V2, param))
+                .exchange()
+                .expectStatus().isEqualTo(UNSUPPORTED_MEDIA_TYPE);
+
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .contentType(vendorType(ValidVersion.V2.name(), WireFormat.SMILE))
+                .bodyValue(codecs.encode(WireFormat.SMILE, ValidVersion.V2, param))
+                .exchange()
+                .expectStatus().isEqualTo(UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @Test
+    public void should_respond_with_write_token_that_reads_wait_for() {
+        String id = "token";
+        String token = webTestClient.post().uri(format(GET_HEADER_URL + ADDRESS_BY_ID_SUFFIX, id))
+                .header(API_VERSION, ValidVersion.V2.name())
+                .body(fromFormData(PARAM_ZIP, address.getZip()).with(PARAM_TOWN, address.getTown()))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectHeader().exists(WRITE_TOKEN_HEADER)
+                .returnResult(Void.class).getResponseHeaders().getFirst(WRITE_TOKEN_HEADER);
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V1, id))
+                .accept(APPLICATION_JSON)
+                .header(WRITE_TOKEN_HEADER, token)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath(JSON_PATH_ADDRESS).isEqualTo(getAddress(address));
+
+        webTestClient.get().uri(format(GET_ADDRESS_URL + ADDRESS_BY_ID_SUFFIX, ValidVersion.V1, id))
+                .accept(APPLICATION_JSON)
+                .header(WRITE_TOKEN_HEADER, Long.toString(Long.parseLong(token) + 1_000_000))
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+
+    @Test
+    public void should_apply_save_only_if_match_is_current() {
+        addressService.save("cas", new Address("10115", "Berlin"));
+        String etag = webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1) + format(ADDRESS_BY_ID_SUFFIX, "cas"))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+
+        String newEtag = webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V2) + format(ADDRESS_BY_ID_SUFFIX, "cas"))
+                .header(IF_MATCH, etag)
+                .body(fromFormData(PARAM_ZIP, "20095").with(PARAM_TOWN, "Hamburg"))
+                .exchange()
+                .expectStatus().isAccepted()
+                .returnResult(Void.class).getResponseHeaders().getETag();
+
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V2) + format(ADDRESS_BY_ID_SUFFIX, "cas"))
+                .header(IF_MATCH, etag)
+                .body(fromFormData(PARAM_ZIP, "80331").with(PARAM_TOWN, "Muenchen"))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED);
+
+        webTestClient.post().uri(GET_HEADER_URL + format(ADDRESS_BY_ID_SUFFIX, "cas"))
+                .header(API_VERSION, ValidVersion.V1.name())
+                .header(IF_MATCH, "\"1-V1\", " + newEtag)
+                .body(fromFormData(PARAM_ADDRESS, "50667 Koeln"))
+                .exchange()
+                .expectStatus().isAccepted();
+
+        assertEquals("Koeln", addressService.load("cas").getTown());
+    }
+
+    @Test
+    public void should_respond_with_precondition_failed_for_unknown_id_or_weak_etag() {
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1) + format(ADDRESS_BY_ID_SUFFIX, UNKNOWN_ID))
+                .header(IF_MATCH, "*")
+                .body(fromFormData(PARAM_ADDRESS, "50667 Koeln"))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED);
+
+        long revision = addressService.load().getRevision();
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .header(IF_MATCH, "W/\"" + addressService.getEpoch() + '.' + revision + "-V1\"")
+                .body(fromFormData(PARAM_ADDRESS, "50667 Koeln"))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED);
+        assertEquals(revision, addressService.load().getRevision());
+    }
+
+    @Test
+    public void should_never_lose_conditional_increments_under_contention() throws Exception {
+        addressService.save("counter", new Address("00000", "Counter"));
+        int threads = 4;
+        int increments = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> conflicts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            conflicts.add(executor.submit(() -> {
+                int failed = 0;
+                for (int i = 0; i < increments; ) {
+                    Address current = addressService.load("counter");
+                    String next = format("%05d", Integer.parseInt(current.getZip()) + 1);
+                    try {
+                        addressService.save("counter", new Address(next, "Counter"),
+                                revision -> revision == current.getRevision());
+                        i++;
+                    } catch (PreconditionFailedException e) {
+                        failed++;
+                    }
+                }
+                return failed;
+            }));
+        }
+        for (Future<Integer> future : conflicts) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(format("%05d", threads * increments), addressService.load("counter").getZip());
+    }
+
+    @Test
+    public void should_respond_with_not_modified_for_matching_etag() {
+        String etag = webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .header(IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(ETAG, etag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void should_not_match_an_etag_of_an_earlier_epoch() {
+        String etag = webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+        String earlierEpoch = "\"x" + etag.substring(1);
+
+        webTestClient.get().uri(GET_HEADER_URL)
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .header(IF_NONE_MATCH, earlierEpoch)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(ETAG, etag);
+    }
+
+    @Test
+    public void should_not_apply_save_if_match_is_of_an_earlier_epoch() {
+        long revision = addressService.load().getRevision();
+        webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .header(IF_MATCH, "\"x" + addressService.getEpoch() + '.' + revision + "-V1\"")
+                .body(fromFormData(PARAM_ADDRESS, "50667 Koeln"))
+                .exchange()
+                .expectStatus().isEqualTo(PRECONDITION_FAILED);
+        assertEquals(revision, addressService.load().getRevision());
+    }
+
+    @Test
+    public void should_use_distinct_etags_per_version() {
+        String etagV1 = webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .exchange()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+
+        webTestClient.get().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V2.name()))
+                .header(IF_NONE_MATCH, etagV1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(ETAG, not(etagV1));
+    }
+
+    @Test
+    public void should_change_etag_after_save() {
+        String etag = webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+
+        addressService.save(address);
+
+        String newEtag = webTestClient.get().uri(format(GET_ADDRESS_URL, ValidVersion.V1))
+                .accept(APPLICATION_JSON)
+                .header(IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(byte[].class).getResponseHeaders().getETag();
+        assertThat(newEtag, not(etag));
+    }
+
+    @Test
+    public void should_save_json_array_batch_on_v1_url() {
+        webTestClient.post().uri(format(BATCH_URL, ValidVersion.V1))
+                .contentType(APPLICATION_JSON)
+                .bodyValue("[{\"id\":\"b1\",\"address\":\"20095 Hamburg\"},"
+                        + "{\"id\":\"b2\",\"address\":\"not an address\"},"
+                        + "{\"address\":\"50667 Koeln\"}]")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1)
+                .jsonPath("$.rejected").isEqualTo(2)
+                .jsonPath("$.errors.length()").isEqualTo(2)
+                .jsonPath("$.errors[0].id").isEqualTo("b2")
+                .jsonPath("$.errors[0].index").isEqualTo(1)
+                .jsonPath("$.errors[1].index").isEqualTo(2);
+
+        assertEquals("Hamburg", addressService.load("b1").getTown());
+    }
+
+    @Test
+    public void should_save_ndjson_batch_with_v2_header() {
+        webTestClient.post().uri(BATCH_HEADER_URL)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .contentType(MediaType.valueOf(APPLICATION_NDJSON))
+                .bodyValue("{\"id\":\"n1\",\"zip\":\"01067\",\"town\":\"Dresden\"}\n"
+                        + "{\"id\":\"n2\",\"zip\":\"04109\",\"town\":\"Leipzig\"}\n")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(2)
+                .jsonPath("$.rejected").isEqualTo(0);
+
+        assertEquals("01067", addressService.load("n1").getZip());
+        assertEquals("Leipzig", addressService.load("n2").getTown());
+    }
+
+    @Test
+    public void should_save_batch_with_v1_accept() {
+        webTestClient.post().uri(BATCH_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .contentType(APPLICATION_JSON)
+                .bodyValue("[{\"id\":\"a1\",\"address\":\"99084 Erfurt\"}]")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody().jsonPath("$.accepted").isEqualTo(1);
+
+        assertEquals("Erfurt", addressService.load("a1").getTown());
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_malformed_batch() {
+        webTestClient.post().uri(format(BATCH_URL, ValidVersion.V2))
+                .contentType(APPLICATION_JSON)
+                .bodyValue("[{\"id\":\"m0\",\"zip\":\"10115\",\"town\":\"Berlin\"},{\"id\":\"m1\",\"zip\":")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(1)
+                .jsonPath("$.malformedAt").isEqualTo(1);
+
+        assertEquals("Berlin", addressService.load("m0").getTown());
+    }
+
+    @Test
+    public void should_import_v1_lines_from_the_import_directory_on_v1_url() throws IOException {
+        Path file = Paths.get(IMPORT_DIRECTORY, "it.txt");
+        Files.createDirectories(file.getParent());
+        Files.write(file, "96047 Bamberg\nnot an address\r\n97070 Wuerzburg\n".getBytes(UTF_8));
+
+        webTestClient.post().uri(format(IMPORT_URL, ValidVersion.V1) + "?file=it.txt&prefix=it-")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.imported").isEqualTo(2)
+                .jsonPath("$.rejected").isEqualTo(1)
+                .jsonPath("$.errors[0].offset").isEqualTo(14);
+
+        assertEquals("Bamberg", addressService.load("it-0").getTown());
+        assertEquals("97070", addressService.load("it-30").getZip());
+
+        webTestClient.post().uri(format(IMPORT_URL, ValidVersion.V1) + "?file=../pom.xml")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(format(IMPORT_URL, ValidVersion.V1) + "?file=it.txt&prefix=")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri(format(IMPORT_URL, ValidVersion.V1) + "?file=it.txt")
+                .exchange()
+                .expectStatus().isOk();
+        assertEquals("Bamberg", addressService.load("import-it.txt-0").getTown());
+    }
+
+    @Test
+    public void should_export_ndjson_in_v1_shape_on_url() {
+        addressService.save("e1", new Address("28195", "Bremen"));
+
+        webTestClient.get().uri(format(BATCH_URL, ValidVersion.V1))
+                .accept(MediaType.valueOf(APPLICATION_NDJSON))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .value(containsString("{\"id\":\"e1\",\"address\":\"28195 Bremen\"}\n"))
+                .value(containsString("{\"id\":\"default\",\"address\":\"12043 Berlin\"}\n"));
+    }
+
+    @Test
+    public void should_export_ndjson_in_v2_shape_with_header() {
+        webTestClient.get().uri(BATCH_HEADER_URL)
+                .accept(MediaType.valueOf(APPLICATION_NDJSON))
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(containsString("{\"id\":\"default\",\"zip\":\"12043\",\"town\":\"Berlin\"}\n"));
+    }
+
+    @Test
+    public void should_export_ndjson_with_v2_accept() {
+        webTestClient.get().uri(BATCH_ACCEPT_URL)
+                .accept(MediaType.valueOf(format(APPLICATION_ACCEPT_VND_AND_NDJSON, ValidVersion.V2)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(format(APPLICATION_ACCEPT_VND_AND_NDJSON, ValidVersion.V2))
+                .expectBody(String.class).value(containsString("\"zip\":\"12043\""));
+    }
+
+    @Test
+    public void should_page_through_zip_prefix_matches_on_v1_url() {
+        saveZipQueryAddresses();
+
+        byte[] firstPage = webTestClient.get().uri(format(ZIP_QUERY_URL, ValidVersion.V1) + "?prefix=987&limit=2")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(2)
+                .jsonPath("$.items[0].id").isEqualTo("z1")
+                .jsonPath("$.items[0].address").isEqualTo("98700 Nord")
+                .jsonPath("$.items[1].address").isEqualTo("98755 Mitte")
+                .returnResult().getResponseBody();
+        String next = JsonPath.read(new String(firstPage, UTF_8), "$.next");
+
+        webTestClient.get().uri(format(ZIP_QUERY_URL, ValidVersion.V1) + "?prefix=987&limit=2&cursor=" + next)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items.length()").isEqualTo(1)
+                .jsonPath("$.items[0].address").isEqualTo("98799 Sued")
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    public void should_stream_zip_range_in_v2_shape_with_header() {
+        saveZipQueryAddresses();
+
+        webTestClient.get().uri(ZIP_QUERY_HEADER_URL + "?from=98755&to=98800")
+                .accept(MediaType.valueOf(APPLICATION_NDJSON))
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_NDJSON)
+                .expectBody(String.class).isEqualTo(
+                        "{\"id\":\"z2\",\"zip\":\"98755\",\"town\":\"Mitte\"}\n"
+                        + "{\"id\":\"z3\",\"zip\":\"98799\",\"town\":\"Sued\"}\n"
+                        + "{\"id\":\"z4\",\"zip\":\"98800\",\"town\":\"Ost\"}\n");
+    }
+
+    @Test
+    public void should_query_zips_with_v2_accept() {
+        saveZipQueryAddresses();
+
+        webTestClient.get().uri(ZIP_QUERY_ACCEPT_URL + "?prefix=98800")
+                .accept(vendorJson(ValidVersion.V2.name()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(vendorJson(ValidVersion.V2.name()))
+                .expectBody()
+                .jsonPath("$.items[0].zip").isEqualTo("98800")
+                .jsonPath("$.items[0].town").isEqualTo("Ost");
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_invalid_zip_query() {
+        for (String query : new String[] {"prefix=12a", "prefix=123456", "from=2000", "from=20000&to=10000",
+                "prefix=1&from=10000", "cursor=-5", "limit=0"}) {
+            webTestClient.get().uri(format(ZIP_QUERY_URL, ValidVersion.V2) + "?" + query)
+                    .accept(APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isBadRequest();
+        }
+    }
+
+    @Test
+    public void should_complete_towns_in_v1_shape_on_url() {
+        saveTownCompletionAddresses();
+
+        webTestClient.get().uri(format(TOWN_COMPLETION_URL, ValidVersion.V1) + "?prefix=qux")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].address").isEqualTo("98102 Quxhausen")
+                .jsonPath("$[1].address").isEqualTo("98103 Q\u00fcxdorf");
+    }
+
+    @Test
+    public void should_complete_towns_ignoring_case_and_accents_with_v2_header() {
+        saveTownCompletionAddresses();
+
+        webTestClient.get().uri(uriBuilder -> uriBuilder.path(TOWN_COMPLETION_HEADER_URL)
+                        .queryParam("prefix", "Q\u00dcXD").queryParam("limit", 1).build())
+                .accept(APPLICATION_JSON)
+                .header(API_VERSION, ValidVersion.V2.name())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].zip").isEqualTo("98103")
+                .jsonPath("$[0].town").isEqualTo("Q\u00fcxdorf");
+
+        webTestClient.get().uri(format(TOWN_COMPLETION_URL, ValidVersion.V2) + "?prefix=qux&limit=11")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void should_stream_changes_in_v1_shape_after_last_event_id_on_url() {
+        long first = addressService.save("feed-a", new Address("01067", "Dresden"));
+        long second = addressService.save("feed-b", new Address("04109", "Leipzig"));
+
+        FluxExchangeResult<ServerSentEvent<String>> result = webTestClient.get()
+                .uri(format(CHANGES_URL, ValidVersion.V1))
+                .accept(TEXT_EVENT_STREAM)
+                .header(LAST_EVENT_ID_HEADER, addressService.getEpoch() + '.' + first)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(SERVER_SENT_EVENT);
+        try (Stream<ServerSentEvent<String>> events = result.getResponseBody().timeout(EVENT_TIMEOUT).toStream()) {
+            Iterator<ServerSentEvent<String>> iterator = events.iterator();
+            assertEvent(iterator.next(), second, AddressChangeFeed.ADDRESS_EVENT,
+                    "{\"id\":\"feed-b\",\"address\":\"04109 Leipzig\"}");
+
+            String token = webTestClient.post().uri(format(GET_ADDRESS_URL, ValidVersion.V2) + format(ADDRESS_BY_ID_SUFFIX, "feed-a"))
+                    .body(fromFormData(PARAM_ZIP, "01069").with(PARAM_TOWN, "Dresden"))
+                    .exchange()
+                    .expectStatus().isAccepted()
+                    .returnResult(Void.class).getResponseHeaders().getFirst(WRITE_TOKEN_HEADER);
+            assertEvent(iterator.next(), Long.parseLong(token), AddressChangeFeed.ADDRESS_EVENT,
+                    "{\"id\":\"feed-a\",\"address\":\"01069 Dresden\"}");
+        }
+    }
+
+    @Test
+    public void should_reset_change_stream_for_unknown_last_event_id_with_v2_accept() {
+        long revision = addressService.save("feed-c", new Address("20095", "Hamburg"));
+
+        FluxExchangeResult<ServerSentEvent<String>> result = webTestClient.get().uri(CHANGES_ACCEPT_URL)
+                .header(ACCEPT, TEXT_EVENT_STREAM_VALUE + ", " + format(APPLICATION_ACCEPT_VND_AND_JSON, ValidVersion.V2))
+                .header(LAST_EVENT_ID_HEADER, "0")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(SERVER_SENT_EVENT);
+        try (Stream<ServerSentEvent<String>> events = result.getResponseBody().timeout(EVENT_TIMEOUT).toStream()) {
+            Iterator<ServerSentEvent<String>> iterator = events.iterator();
+            assertEvent(iterator.next(), revision, AddressChangeFeed.RESET_EVENT, "{}");
+
+            long next = addressService.save("feed-c", new Address("20097", "Hamburg"));
+            assertEvent(iterator.next(), next, AddressChangeFeed.ADDRESS_EVENT,
+                    "{\"id\":\"feed-c\",\"zip\":\"20097\",\"town\":\"Hamburg\"}");
+        }
+    }
+
+    @Test
+    public void should_time_requests_and_stages_per_version_and_strategy() throws Exception {
+        long count = saveAcceptV1Timer().count();
+
+        webTestClient.post().uri(GET_ADDRESS_ACCEPT_URL)
+                .accept(vendorJson(ValidVersion.V1.name()))
+                .body(fromFormData(PARAM_ADDRESS, getAddress(address)))
+                .exchange()
+                .expectStatus().isAccepted();
+
+        assertThat(awaitSaveAcceptV1Count(count + 1), is(count + 1));
+        assertThat(meterRegistry.get(ApiMetrics.STAGES)
+                .tag("stage", "conversion")
+                .tag("version", "V1")
+                .timer().count() > 0, is(true));
+
+        webTestClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(PROMETHEUS_MAX_BYTES))
+                .build()
+                .get().uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(containsString("api_requests_seconds_bucket"));
+    }
+
+    /**
+     * The reactive stack records once the response has been written, which may be after the client
+     * has read it.
+     */
+    private long awaitSaveAcceptV1Count(final long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        long count = saveAcceptV1Timer().count();
+        while (count < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            count = saveAcceptV1Timer().count();
+        }
+        return count;
+    }
+
+    private Timer saveAcceptV1Timer() {
+        return meterRegistry.get(ApiMetrics.REQUESTS)
+                .tag("operation", "AddressController.saveAddress")
+                .tag("strategy", "accept")
+                .tag("version", "V1")
+                .timer();
+    }
+
+    private void assertEvent(final ServerSentEvent<String> event, final long revision, final String name,
+                             final String data) {
+        assertEquals(addressService.getEpoch() + '.' + revision, event.id());
+        assertEquals(name, event.event());
+        assertEquals(data, event.data());
+    }
+
+    private String etag(final ValidVersion version, final WireFormat format) {
+        String etag = "\"" + addressService.getEpoch() + '.' + addressService.load().getRevision() + '-' + version;
+        return format == WireFormat.JSON ? etag + '"' : etag + '+' + format.getSuffix() + '"';
+    }
+
+    private void saveTownCompletionAddresses() {
+        addressService.save("t1", new Address("98101", "Quxhausen"));
+        addressService.save("t2", new Address("98102", "Quxhausen"));
+        addressService.save("t3", new Address("98103", "Q\u00fcxdorf"));
+    }
+
+    private void saveZipQueryAddresses() {
+        addressService.save("z1", new Address("98700", "Nord"));
+        addressService.save("z2", new Address("98755", "Mitte"));
+        addressService.save("z3", new Address("98799", "Sued"));
+        addressService.save("z4", new Address("98800", "Ost"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VersionedAddressConverter<AddressParamV1> v1Converter() {
+        return (VersionedAddressConverter<AddressParamV1>) VersionedAddressConverter.forVersion(ValidVersion.V1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VersionedAddressConverter<AddressParamV2> v2Converter() {
+        return (VersionedAddressConverter<AddressParamV2>) VersionedAddressConverter.forVersion(ValidVersion.V2);
+    }
+
+    private static MediaType vendorType(final String version, final WireFormat format) {
+        return MediaType.valueOf(VersioningStrategy.VENDOR_TYPE_PREFIX + version + '+' + format.getSuffix());
+    }
+
+    private static MediaType vendorJson(final String version) {
+        return MediaType.valueOf(format(APPLICATION_ACCEPT_VND_AND_JSON, version));
     }
 
     private String getAddress(Address address) {
@@ -0,0 +1,351 @@
+package com.aoher.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.aoher.util.Constants.WRITE_TOKEN_HEADER;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Drives mixed read/write traffic against the embedded server. Tuned with {@code -Dload.threads},
+ * {@code -Dload.requests} (per thread), {@code -Dload.write-percent} and {@code -Dload.v2-percent}.
+ * <p>
+ * Every thread owns one key and shares a few hot keys with the others. Owned keys detect lost updates
+ * (a read after an acknowledged write must return that write, and so must the final read), hot keys
+ * detect revisions going backwards. Zip and town are derived from the same number on every write, so
+ * a response mixing two writes is reported as a torn read. {@link AddressReactiveLoadIT} runs the same
+ * traffic against the reactive stack. Reads that check a thread's own write send its write token, so
+ * the test also holds with {@code -Daddress.write.async=true}.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+public class AddressLoadIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddressLoadIT.class);
+
+    private static final int THREADS = Integer.getInteger("load.threads", 8);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 500);
+    private static final int WRITE_PERCENT = Integer.getInteger("load.write-percent", 20);
+    private static final int V2_PERCENT = Integer.getInteger("load.v2-percent", 50);
+    private static final int HOT_KEYS = 4;
+
+    private static final String[] STRATEGIES = {"url", "header", "accept"};
+    private static final String[] VERSIONS = {"V1", "V2"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    public void should_keep_every_write_and_never_tear_reads_under_mixed_traffic() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Stats>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return run(thread);
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        Stats total = new Stats();
+        for (Future<Stats> future : futures) {
+            total.add(future.get());
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            Stats stats = futures.get(thread).get();
+            if (stats.lastSeq >= 0) {
+                int owner = thread;
+                total.checkOwnWrite(() -> read("url", "V2", ownedKey(owner), stats.lastToken), thread, stats.lastSeq);
+            }
+        }
+
+        total.report(((WebServerApplicationContext) context).getWebServer().getClass().getSimpleName(), elapsed);
+        assertEquals("errors", 0, total.errors);
+        assertEquals("lost updates", 0, total.lostUpdates);
+        assertEquals("torn reads", 0, total.tornReads);
+        assertEquals("revision regressions", 0, total.regressions);
+    }
+
+    private Stats run(final int thread) throws IOException, InterruptedException {
+        Random random = new Random(thread);
+        Stats stats = new Stats();
+        long[] hotRevisions = new long[HOT_KEYS];
+        int seq = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            String strategy = STRATEGIES[random.nextInt(STRATEGIES.length)];
+            String version = random.nextInt(100) < V2_PERCENT ? VERSIONS[1] : VERSIONS[0];
+            boolean hot = random.nextBoolean();
+            int hotKey = random.nextInt(HOT_KEYS);
+            String key = hot ? "load-hot-" + hotKey : ownedKey(thread);
+
+            if (random.nextInt(100) < WRITE_PERCENT) {
+                long begin = System.nanoTime();
+                HttpResponse<Void> response = write(strategy, version, key, thread, seq);
+                stats.writes.record(System.nanoTime() - begin);
+                if (response.statusCode() != 202) {
+                    stats.errors++;
+                    continue;
+                }
+                if (!hot) {
+                    stats.lastSeq = seq;
+                    stats.lastToken = response.headers().firstValue(WRITE_TOKEN_HEADER).orElse(null);
+                    String token = stats.lastToken;
+                    stats.checkOwnWrite(() -> read(strategy, version, key, token), thread, seq);
+                }
+                seq++;
+            } else {
+                long begin = System.nanoTime();
+                Observed observed;
+                try {
+                    observed = read(strategy, version, key, null);
+                } catch (TornReadException e) {
+                    stats.tornReads++;
+                    continue;
+                } catch (IOException e) {
+                    stats.errors++;
+                    continue;
+                } finally {
+                    stats.reads.record(System.nanoTime() - begin);
+                }
+                if (observed == null) {
+                    continue;
+                }
+                if (hot) {
+                    if (observed.revision < hotRevisions[hotKey]) {
+                        stats.regressions++;
+                    }
+                    hotRevisions[hotKey] = Math.max(hotRevisions[hotKey], observed.revision);
+                } else if (observed.thread != thread || observed.seq != stats.lastSeq) {
+                    stats.lostUpdates++;
+                }
+            }
+        }
+        return stats;
+    }
+
+    private HttpResponse<Void> write(final String strategy, final String version, final String key,
+                                     final int thread, final int seq) throws IOException, InterruptedException {
+        String zip = zip(thread, seq);
+        String town = "T" + thread + "x" + seq + "z" + zip;
+        String form = "V1".equals(version)
+                ? "address=" + URLEncoder.encode(zip + " " + town, UTF_8)
+                : "zip=" + zip + "&town=" + town;
+        HttpRequest request = request(strategy, version, key)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private Observed read(final String strategy, final String version, final String key, final String token)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = request(strategy, version, key);
+        if (token != null) {
+            request.header(WRITE_TOKEN_HEADER, token);
+        }
+        HttpResponse<byte[]> response = client.send(request.GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + key + " returned " + response.statusCode());
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        String zip;
+        String town;
+        if ("V1".equals(version)) {
+            String address = body.path("address").asText();
+            zip = address.substring(0, 5);
+            town = address.substring(6);
+        } else {
+            zip = body.path("zip").asText();
+            town = body.path("town").asText();
+        }
+        int x = town.indexOf('x');
+        int z = town.indexOf('z');
+        if (x < 0 || z < 0 || !town.substring(z + 1).equals(zip)) {
+            throw new TornReadException();
+        }
+        int thread = Integer.parseInt(town.substring(1, x));
+        int seq = Integer.parseInt(town.substring(x + 1, z));
+        if (!zip(thread, seq).equals(zip)) {
+            throw new TornReadException();
+        }
+        String etag = response.headers().firstValue("ETag").orElse("\"0.0-\"");
+        long revision = Long.parseLong(etag.substring(etag.indexOf('.') + 1, etag.indexOf('-')));
+        return new Observed(thread, seq, revision);
+    }
+
+    private HttpRequest.Builder request(final String strategy, final String version, final String key) {
+        String base = "http://localhost:" + port;
+        switch (strategy) {
+            case "url":
+                return HttpRequest.newBuilder(URI.create(format("%s/apiurl/%s/address/%s", base, version, key)))
+                        .header("Accept", "application/json");
+            case "header":
+                return HttpRequest.newBuilder(URI.create(base + "/apiheader/address/" + key))
+                        .header("Accept", "application/json")
+                        .header("X-API-Version", version);
+            default:
+                return HttpRequest.newBuilder(URI.create(base + "/apiaccept/address/" + key))
+                        .header("Accept", "application/vnd.company.app-" + version + "+json");
+        }
+    }
+
+    private static String ownedKey(final int thread) {
+        return "load-" + thread;
+    }
+
+    private static String zip(final int thread, final int seq) {
+        return format("%05d", (thread * 7919 + seq) % 100000);
+    }
+
+    private static final class Observed {
+
+        private final int thread;
+        private final int seq;
+        private final long revision;
+
+        private Observed(final int thread, final int seq, final long revision) {
+            this.thread = thread;
+            this.seq = seq;
+            this.revision = revision;
+        }
+    }
+
+    private static final class TornReadException extends IOException {
+    }
+
+    private interface Read {
+
+        Observed read() throws IOException, InterruptedException;
+    }
+
+    private static final class Latencies {
+
+        private long[] nanos = new long[256];
+        private int count;
+
+        private void record(final long value) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+        }
+
+        private void add(final Latencies other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.nanos[i]);
+            }
+        }
+
+        private String summary(final long elapsed) {
+            if (count == 0) {
+                return "n=0";
+            }
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return format("n=%d throughput=%.0f/s p50=%.2fms p99=%.2fms max=%.2fms", count,
+                    count * 1e9 / elapsed, percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+                    sorted[count - 1] / 1e6);
+        }
+
+        private static long percentile(final long[] sorted, final int percent) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percent / 100.0 * sorted.length) - 1)];
+        }
+    }
+
+    private static final class Stats {
+
+        private final Latencies reads = new Latencies();
+        private final Latencies writes = new Latencies();
+        private int lastSeq = -1;
+        private String lastToken;
+        private int errors;
+        private int lostUpdates;
+        private int tornReads;
+        private int regressions;
+
+        private void add(final Stats other) {
+            reads.add(other.reads);
+            writes.add(other.writes);
+            errors += other.errors;
+            lostUpdates += other.lostUpdates;
+            tornReads += other.tornReads;
+            regressions += other.regressions;
+        }
+
+        /**
+         * Counts a lost update unless {@code read} returns write {@code seq} of {@code thread}, and a torn
+         * read or an error instead if it fails.
+         */
+        private void checkOwnWrite(final Read read, final int thread, final int seq) throws InterruptedException {
+            Observed observed;
+            try {
+                observed = read.read();
+            } catch (TornReadException e) {
+                tornReads++;
+                return;
+            } catch (IOException e) {
+                errors++;
+                return;
+            }
+            if (observed == null || observed.seq != seq || observed.thread != thread) {
+                lostUpdates++;
+            }
+        }
+
+        private void report(final String server, final long elapsed) {
+            int total = reads.count + writes.count;
+            LOG.info(format("load: server=%s threads=%d requests=%d write%%=%d v2%%=%d elapsed=%.2fs throughput=%.0f/s",
+                    server, THREADS, total, WRITE_PERCENT, V2_PERCENT, elapsed / 1e9, total * 1e9 / elapsed));
+            LOG.info("load: reads  {}", reads.summary(elapsed));
+            LOG.info("load: writes {}", writes.summary(elapsed));
+            LOG.info(format("load: errors=%d (%.2f%%) lostUpdates=%d tornReads=%d revisionRegressions=%d",
+                    errors, total == 0 ? 0 : errors * 100.0 / total, lostUpdates, tornReads, regressions));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.aoher.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "spring.main.web-application-type=reactive")
+public class AddressReactiveLoadIT extends AddressLoadIT {
+}
@@ -0,0 +1,100 @@
+package com.aoher.controller;
+
+import com.aoher.model.Address;
+import com.aoher.service.AddressService;
+import com.aoher.storage.SimulatedAddressRepository;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.VersioningStrategy;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+/**
+ * Reads of one id through every versioning strategy and version at once, against a backend that holds
+ * the find until all of them have arrived. {@link AddressRepositoryReactiveIT} runs it on the reactive
+ * stack.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = "address.repository.simulated=true")
+public class AddressRepositoryIT {
+
+    private static final int READS_PER_API_VERSION = 2;
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private AddressService addressService;
+
+    @Autowired
+    private SimulatedAddressRepository repository;
+
+    @Test
+    public void should_share_one_backend_call_across_versions_and_strategies() throws Exception {
+        addressService.save("burst", new Address("12043", "Berlin"));
+        awaitTrue(() -> addressService.getPendingRepositoryWrites() == 0);
+        long finds = repository.getFindCount();
+        long arrivedBefore = addressService.getRepositoryLoads() + addressService.getCoalescedLoads();
+        CountDownLatch gate = new CountDownLatch(1);
+        repository.holdFinds(gate);
+
+        List<WebTestClient.RequestHeadersSpec<?>> requests = new ArrayList<>();
+        for (ValidVersion version : ValidVersion.values()) {
+            for (int i = 0; i < READS_PER_API_VERSION; i++) {
+                requests.add(webTestClient.get().uri("/apiurl/" + version + "/address/burst"));
+                requests.add(webTestClient.get().uri("/apiheader/address/burst")
+                        .header(VersioningStrategy.API_VERSION_HEADER, version.name()));
+                requests.add(webTestClient.get().uri("/apiaccept/address/burst")
+                        .accept(MediaType.valueOf(VersioningStrategy.VENDOR_TYPE_PREFIX + version + "+json")));
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(requests.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> responses = new ArrayList<>();
+        for (WebTestClient.RequestHeadersSpec<?> request : requests) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                request.exchange().expectStatus().isOk();
+                return null;
+            }));
+        }
+        start.countDown();
+        awaitTrue(() -> addressService.getRepositoryLoads() + addressService.getCoalescedLoads() - arrivedBefore
+                == requests.size());
+        gate.countDown();
+        for (Future<?> response : responses) {
+            response.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        repository.holdFinds(null);
+
+        assertEquals(finds + 1, repository.getFindCount());
+    }
+
+    private static void awaitTrue(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
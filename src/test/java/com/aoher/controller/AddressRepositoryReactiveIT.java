@@ -0,0 +1,10 @@
+package com.aoher.controller;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "spring.main.web-application-type=reactive", "address.repository.simulated=true"})
+public class AddressRepositoryReactiveIT extends AddressRepositoryIT {
+}
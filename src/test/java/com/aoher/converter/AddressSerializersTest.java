@@ -0,0 +1,56 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.aoher.version.WireFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AddressSerializersTest {
+
+    private static final List<Address> ADDRESSES = Arrays.asList(
+            new Address("12043", "Berlin"),
+            new Address("SW1A 1AA", "London"),
+            new Address("", ""),
+            new Address(null, "Berlin"),
+            new Address("12043", null),
+            new Address(null, null),
+            new Address("80331", "M\u00fcnchen \"Altstadt\"\\\t\n\u0001"),
+            new Address("12043", "\ud83c\udfe0 \u6771\u4eac"),
+            new Address("12043", String.join("", Collections.nCopies(100, "Berlin-"))));
+
+    private final AddressParamCodecs codecs = new AddressParamCodecs(new ObjectMapper());
+
+    @Test
+    public void should_write_the_same_bytes_as_the_param_in_every_format() throws Exception {
+        for (WireFormat format : WireFormat.values()) {
+            for (ValidVersion version : ValidVersion.values()) {
+                for (Address address : ADDRESSES) {
+                    Object param = VersionedAddressConverter.forVersion(version).toParam(address);
+                    assertArrayEquals(format + " " + version + " " + address.getZip() + " " + address.getTown(),
+                            codecs.encode(format, version, param), codecs.encodeAddress(format, version, address));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void should_time_the_conversion_when_given_a_timer() throws Exception {
+        Timer timer = new SimpleMeterRegistry().timer("conversion");
+        for (ValidVersion version : ValidVersion.values()) {
+            for (Address address : ADDRESSES) {
+                codecs.encodeAddress(WireFormat.JSON, version, address, timer);
+            }
+        }
+        assertEquals(ValidVersion.values().length * ADDRESSES.size(), timer.count());
+    }
+}
@@ -0,0 +1,101 @@
+package com.aoher.converter;
+
+import com.aoher.model.Address;
+import com.aoher.version.AddressParamV1;
+import org.junit.Test;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.aoher.util.Constants.ADDRESS_PATTERN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the parser and validator with {@link com.aoher.util.Constants#ADDRESS_PATTERN} on random
+ * strings. Half of them start with a well-formed zip so that both outcomes are common; the characters
+ * include line terminators, non-ASCII digits and lone surrogates. Override the seed with
+ * {@code -Dv1-address.seed} to reproduce a failure.
+ */
+public class V1AddressParserTest {
+
+    private static final int CASES = 200_000;
+
+    private static final char[] ALPHABET = {
+            '0', '1', '5', '9', ' ', 'a', 'Z', '-', '.', '\u00df', '\t', '\u000b', '\f', '\u001c',
+            '\n', '\r', '\u0085', '\u2028', '\u2029', '\u0660', '\uff10', '\ud83d', '\ude00'
+    };
+
+    private static final Pattern PATTERN = Pattern.compile(ADDRESS_PATTERN);
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    public void should_accept_exactly_what_the_regex_accepts() {
+        long seed = Long.getLong("v1-address.seed", System.nanoTime());
+        Random random = new Random(seed);
+        int accepted = 0;
+        for (int i = 0; i < CASES; i++) {
+            String address = randomAddress(random);
+            Matcher matcher = PATTERN.matcher(address);
+            boolean matches = matcher.matches();
+            String message = "seed " + seed + ", address '" + escape(address) + "'";
+            assertEquals(message, matches, V1AddressParser.isValid(address));
+            if (matches) {
+                accepted++;
+                Address parsed = V1AddressParser.parse(address);
+                assertEquals(message, matcher.group(1), parsed.getZip());
+                assertEquals(message, matcher.group(2), parsed.getTown());
+            }
+            if (i % 100 == 0) {
+                AddressParamV1 param = new AddressParamV1();
+                param.setAddress(address);
+                assertEquals(message, matches, validator.validate(param).isEmpty());
+                assertEquals(message, matches, param.isParsed());
+            }
+        }
+        assertTrue("too few valid cases: " + accepted, accepted > CASES / 10);
+    }
+
+    @Test
+    public void should_report_violation_on_address_property_and_accept_null() {
+        AddressParamV1 param = new AddressParamV1();
+        assertTrue(validator.validate(param).isEmpty());
+
+        param.setAddress("1204 Berlin");
+        assertEquals("address", validator.validate(param).iterator().next().getPropertyPath().toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_unvalidated_malformed_address_on_conversion() {
+        AddressParamV1 param = new AddressParamV1();
+        param.setAddress("12043Berlin");
+        AddressParamConverter.convertFromV1(param);
+    }
+
+    private static String randomAddress(final Random random) {
+        StringBuilder builder = new StringBuilder();
+        if (random.nextBoolean()) {
+            for (int i = 0; i < 5; i++) {
+                builder.append((char) ('0' + random.nextInt(10)));
+            }
+            builder.append(' ');
+        }
+        int length = random.nextInt(10);
+        for (int i = 0; i < length; i++) {
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static String escape(final String value) {
+        StringBuilder builder = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            builder.append(c >= 0x20 && c < 0x7f ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+        }
+        return builder.toString();
+    }
+}
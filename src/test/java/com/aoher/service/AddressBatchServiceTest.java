@@ -0,0 +1,108 @@
+package com.aoher.service;
+
+import com.aoher.converter.VersionedAddressConverter;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.model.AddressBatchResult;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import javax.validation.Validation;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Batch bodies fed in buffers of a few bytes, so that elements, tokens and characters are split
+ * across buffers.
+ */
+public class AddressBatchServiceTest {
+
+    private static final int CHUNK_BYTES = 3;
+
+    private static final DefaultDataBufferFactory BUFFERS = new DefaultDataBufferFactory();
+
+    private final AddressService addressService = AddressServices.inMemory();
+
+    private final AddressBatchService batchService = new AddressBatchService();
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ApiMetrics metrics = new ApiMetrics(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batchService, "addressService", addressService);
+        ReflectionTestUtils.setField(batchService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(batchService, "validator",
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(batchService, "metrics", metrics);
+    }
+
+    @Test
+    public void should_save_a_json_array_fed_in_small_buffers() {
+        AddressBatchResult result = saveAll(ValidVersion.V2, "[{\"id\":\"a\",\"zip\":\"80331\",\"town\":\"M\u00fcnchen\"},"
+                + "{\"id\":\"b\",\"zip\":{\"code\":[1]},\"town\":\"Berlin\"}, {\"zip\":\"01067\",\"town\":\"Dresden\"}] trailing");
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(2, result.getRejected());
+        assertEquals(2, result.getErrors().size());
+        assertEquals("b", result.getErrors().get(0).getId());
+        assertEquals(2, result.getErrors().get(1).getIndex());
+        assertTrue(result.isComplete());
+        assertEquals("M\u00fcnchen", addressService.load("a").getTown());
+    }
+
+    @Test
+    public void should_save_ndjson_fed_in_small_buffers() {
+        AddressBatchResult result = saveAll(ValidVersion.V1,
+                "{\"id\":\"c\",\"address\":\"20095 Hamburg\"}\n{\"id\":\"d\",\"address\":\"50667 K\u00f6ln\"}\n");
+
+        assertEquals(2, result.getAccepted());
+        assertEquals("Hamburg", addressService.load("c").getTown());
+        assertEquals("K\u00f6ln", addressService.load("d").getTown());
+    }
+
+    @Test
+    public void should_report_the_item_at_which_a_body_is_malformed_and_what_was_applied_before() {
+        AddressBatchResult result = saveAll(ValidVersion.V2,
+                "[{\"id\":\"e\",\"zip\":\"10115\",\"town\":\"Berlin\"},{\"id\":\"f\",\"zip\":");
+
+        assertFalse(result.isComplete());
+        assertEquals(Long.valueOf(1), result.getMalformedAt());
+        assertEquals(1, result.getAccepted());
+        assertEquals("Berlin", addressService.load("e").getTown());
+    }
+
+    @Test
+    public void should_report_only_the_first_rejected_items() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i <= AddressBatchResult.MAX_REPORTED_ERRORS; i++) {
+            body.append("{\"id\":\"r").append(i).append("\",\"address\":\"not an address\"}\n");
+        }
+        AddressBatchResult result = saveAll(ValidVersion.V1, body.toString());
+
+        assertEquals(AddressBatchResult.MAX_REPORTED_ERRORS + 1, result.getRejected());
+        assertEquals(AddressBatchResult.MAX_REPORTED_ERRORS, result.getErrors().size());
+    }
+
+    private AddressBatchResult saveAll(final ValidVersion version, final String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int from = 0; from < bytes.length; from += CHUNK_BYTES) {
+            buffers.add(BUFFERS.wrap(
+                    Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + CHUNK_BYTES))));
+        }
+        return batchService.saveAll(Flux.fromIterable(buffers), VersionedAddressConverter.forVersion(version)).block();
+    }
+}
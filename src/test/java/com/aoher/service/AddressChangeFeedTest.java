@@ -0,0 +1,127 @@
+package com.aoher.service;
+
+import com.aoher.model.Address;
+import com.aoher.version.ValidVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AddressChangeFeedTest {
+
+    private static final String EPOCH = "k5";
+
+    private final AddressChangeFeed feed = new AddressChangeFeed(new ObjectMapper(), 8, 3);
+
+    private final Events events = new Events();
+
+    @After
+    public void tearDown() {
+        events.dispose();
+    }
+
+    @Test
+    public void should_keep_the_latest_change_per_id_while_a_subscriber_is_behind() throws Exception {
+        feed.subscribe(ValidVersion.V2, EPOCH, null).subscribe(events);
+        save("a", "12043", "Berlin", 1);
+        save("b", "80331", "Muenchen", 2);
+        save("a", "10115", "Berlin", 3);
+
+        events.request(3);
+        assertEvent(2, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"b\",\"zip\":\"80331\",\"town\":\"Muenchen\"}");
+        assertEvent(3, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"a\",\"zip\":\"10115\",\"town\":\"Berlin\"}");
+        assertNull(events.queue.poll(100, TimeUnit.MILLISECONDS));
+
+        save("c", "01067", "Dresden", 4);
+        assertEvent(4, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"c\",\"zip\":\"01067\",\"town\":\"Dresden\"}");
+    }
+
+    @Test
+    public void should_resume_after_the_last_event_id_in_the_version_of_the_subscriber() throws Exception {
+        save("a", "12043", "Berlin", 1);
+        save("b", "80331", "Muenchen", 2);
+        save("c", "01067", "Dresden", 3);
+
+        feed.subscribe(ValidVersion.V1, EPOCH, EPOCH + ".1").subscribe(events);
+        events.request(10);
+        assertEvent(2, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"b\",\"address\":\"80331 Muenchen\"}");
+        assertEvent(3, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"c\",\"address\":\"01067 Dresden\"}");
+    }
+
+    @Test
+    public void should_reset_a_subscriber_that_resumes_too_late_or_falls_too_far_behind() throws Exception {
+        for (int revision = 1; revision <= 9; revision++) {
+            save("id" + revision, "12043", "Berlin", revision);
+        }
+        feed.subscribe(ValidVersion.V2, EPOCH, EPOCH + ".1").subscribe(events);
+        events.request(1);
+        assertEvent(9, AddressChangeFeed.RESET_EVENT, "{}");
+
+        for (int revision = 10; revision <= 13; revision++) {
+            save("id" + revision, "12043", "Berlin", revision);
+        }
+        save("id14", "12043", "Berlin", 14);
+        events.request(2);
+        assertEvent(13, AddressChangeFeed.RESET_EVENT, "{}");
+        assertEvent(14, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"id14\",\"zip\":\"12043\",\"town\":\"Berlin\"}");
+    }
+
+    @Test
+    public void should_reset_a_subscriber_that_the_ring_overtook_before_it_pulled() throws Exception {
+        feed.subscribe(ValidVersion.V2, EPOCH, null).subscribe(events);
+        for (int revision = 1; revision <= 10; revision++) {
+            feed.log("id" + revision, new Address("12043", "Berlin", revision));
+        }
+        feed.signal();
+        events.request(10);
+        assertEvent(9, AddressChangeFeed.RESET_EVENT, "{}");
+        assertEvent(10, AddressChangeFeed.ADDRESS_EVENT, "{\"id\":\"id10\",\"zip\":\"12043\",\"town\":\"Berlin\"}");
+        assertNull(events.queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void should_reset_a_subscriber_that_resumes_from_another_epoch() throws Exception {
+        save("a", "12043", "Berlin", 1);
+        save("b", "80331", "Muenchen", 2);
+
+        feed.subscribe(ValidVersion.V2, EPOCH, "k4.1").subscribe(events);
+        events.request(10);
+        assertEvent(2, AddressChangeFeed.RESET_EVENT, "{}");
+        assertNull(events.queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private void save(final String id, final String zip, final String town, final long revision) {
+        feed.log(id, new Address(zip, town, revision));
+        feed.signal();
+    }
+
+    private void assertEvent(final long revision, final String name, final String data) throws InterruptedException {
+        ServerSentEvent<String> event = events.queue.poll(5, TimeUnit.SECONDS);
+        assertEquals(EPOCH + '.' + revision, event.id());
+        assertEquals(name, event.event());
+        assertEquals(data, event.data());
+    }
+
+    private static final class Events extends BaseSubscriber<ServerSentEvent<String>> {
+
+        private final BlockingQueue<ServerSentEvent<String>> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        protected void hookOnSubscribe(final Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(final ServerSentEvent<String> event) {
+            queue.add(event);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.aoher.service;
+
+import com.aoher.exception.InvalidImportException;
+import com.aoher.model.Address;
+import com.aoher.model.AddressImportResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports with chunks far smaller than a line and than the file, so that lines are split across chunks
+ * and chunks are parsed on several threads.
+ */
+public class AddressImportServiceTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final AddressService addressService = AddressServices.inMemory();
+
+    private AddressImportService importService;
+
+    @Before
+    public void setUp() {
+        importService = new AddressImportService(folder.getRoot().getPath(), 8, 4);
+        ReflectionTestUtils.setField(importService, "addressService", addressService);
+    }
+
+    @After
+    public void tearDown() {
+        importService.close();
+    }
+
+    @Test
+    public void should_import_valid_lines_and_report_invalid_ones_by_offset() throws Exception {
+        Lines lines = new Lines()
+                .add("12043 Berlin\n")
+                .add("80331 M\u00fcnchen\r\n")
+                .add("1204 Berlin\n")
+                .add("12043 Bad", (byte) 0xff, "\n")
+                .add("12043 Berlin\rNeukoelln\n")
+                .add("01067 Dres\u2028den\n")
+                .add("\n")
+                .add("20095 Hamburg");
+
+        AddressImportResult result = importService.importFromDirectory(lines.write(folder.newFile("a.txt").toPath()), "a-");
+
+        assertEquals(3, result.getImported());
+        assertEquals(5, result.getRejected());
+        assertEquals(lines.size(), result.getBytes());
+        assertEquals("Berlin", addressService.load("a-" + lines.offset(0)).getTown());
+        assertEquals("M\u00fcnchen", addressService.load("a-" + lines.offset(1)).getTown());
+        assertEquals("20095", addressService.load("a-" + lines.offset(7)).getZip());
+        assertNull(addressService.load("a-" + lines.offset(2)));
+
+        List<AddressImportResult.LineError> errors = result.getErrors();
+        assertEquals(lines.offset(2), errors.get(0).getOffset());
+        assertEquals(AddressImportService.MALFORMED_LINE, errors.get(0).getError());
+        assertEquals(lines.offset(3), errors.get(1).getOffset());
+        assertEquals(AddressImportService.MALFORMED_UTF8, errors.get(1).getError());
+        assertEquals(lines.offset(4), errors.get(2).getOffset());
+        assertEquals(lines.offset(5), errors.get(3).getOffset());
+        assertEquals(AddressImportService.MALFORMED_LINE, errors.get(3).getError());
+        assertEquals(lines.offset(6), errors.get(4).getOffset());
+    }
+
+    @Test
+    public void should_import_every_line_once_whatever_the_chunks() throws Exception {
+        Lines lines = new Lines();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            lines.add(String.format("%05d Town %d\n", i, i));
+        }
+
+        AddressImportResult result = importService.importFromDirectory(lines.write(folder.newFile("b.txt").toPath()), null);
+
+        assertEquals(count, result.getImported());
+        assertEquals(0, result.getRejected());
+        for (int i = 0; i < count; i++) {
+            assertEquals("Town " + i, addressService.load("import-b.txt-" + lines.offset(i)).getTown());
+        }
+    }
+
+    @Test(expected = InvalidImportException.class)
+    public void should_refuse_files_outside_of_the_import_directory() throws Exception {
+        importService.importFromDirectory("../" + folder.getRoot().getName() + "-other/a.txt", null);
+    }
+
+    @Test
+    public void should_refuse_an_empty_id_prefix_that_would_overwrite_numeric_ids() throws Exception {
+        addressService.save("0", new Address("12043", "Berlin"));
+        try {
+            importService.importFromDirectory(new Lines().add("80331 M\u00fcnchen\n").write(folder.newFile("c.txt").toPath()), "");
+            fail("imported under bare offsets");
+        } catch (InvalidImportException expected) {
+            assertEquals("Berlin", addressService.load("0").getTown());
+        }
+    }
+
+    private static final class Lines {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final List<Long> offsets = new ArrayList<>();
+
+        private Lines add(final Object... parts) {
+            offsets.add((long) bytes.size());
+            for (Object part : parts) {
+                if (part instanceof Byte) {
+                    bytes.write((Byte) part);
+                } else {
+                    bytes.writeBytes(((String) part).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return this;
+        }
+
+        private long offset(final int line) {
+            return offsets.get(line);
+        }
+
+        private int size() {
+            return bytes.size();
+        }
+
+        private String write(final Path file) throws IOException {
+            Files.write(file, bytes.toByteArray());
+            return file.getFileName().toString();
+        }
+    }
+}
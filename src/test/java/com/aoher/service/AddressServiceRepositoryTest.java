@@ -0,0 +1,171 @@
+package com.aoher.service;
+
+import com.aoher.model.Address;
+import com.aoher.storage.AddressJournal;
+import com.aoher.storage.SimulatedAddressRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bursts of blocking and reactive reads against a backend that holds every find until the whole burst
+ * has arrived, and saves that reach the backend after they return.
+ */
+public class AddressServiceRepositoryTest {
+
+    private static final long LATENCY_MILLIS = 200;
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final int READERS_PER_KEY = 8;
+
+    private AddressService service;
+
+    private final SimulatedAddressRepository repository = new SimulatedAddressRepository(LATENCY_MILLIS, 0);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2 * READERS_PER_KEY);
+
+    @Before
+    public void setUp() {
+        service = AddressServices.recovered(null, repository, meterRegistry);
+        service.save("a", new Address("12043", "Berlin"));
+        service.save("b", new Address("20095", "Hamburg"));
+        awaitRepositoryWrites(service);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_call_the_backend_once_per_key_and_burst() throws Exception {
+        int bursts = 2;
+        for (int burst = 1; burst <= bursts; burst++) {
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch gate = new CountDownLatch(1);
+            repository.holdFinds(gate);
+            long arrivedBefore = service.getRepositoryLoads() + service.getCoalescedLoads();
+            List<Future<Address>> reads = new ArrayList<>();
+            for (int i = 0; i < READERS_PER_KEY; i++) {
+                reads.add(executor.submit(read(start, "a", i % 2 == 0)));
+                reads.add(executor.submit(read(start, "b", i % 2 == 0)));
+            }
+            start.countDown();
+            awaitTrue(() -> service.getRepositoryLoads() + service.getCoalescedLoads() - arrivedBefore == reads.size());
+            gate.countDown();
+            for (int i = 0; i < reads.size(); i++) {
+                assertEquals(i % 2 == 0 ? "Berlin" : "Hamburg", reads.get(i).get(5, TimeUnit.SECONDS).getTown());
+            }
+            assertEquals(2 * burst, repository.getFindCount());
+            assertEquals(2 * burst, service.getRepositoryLoads());
+            assertEquals(2 * burst * (READERS_PER_KEY - 1), service.getCoalescedLoads());
+        }
+        assertEquals(2.0 * bursts * (READERS_PER_KEY - 1), meterRegistry.get(AddressService.REPOSITORY_LOADS)
+                .tag("outcome", "coalesced").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void should_return_before_the_backend_has_the_save_and_read_it_back_anyway() {
+        long start = System.nanoTime();
+        service.save("a", new Address("10115", "Berlin-Mitte"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(LATENCY_MILLIS));
+
+        assertEquals("Berlin-Mitte", service.load("a").getTown());
+        assertEquals("Berlin-Mitte", service.find("a").block().getTown());
+        awaitRepositoryWrites(service);
+        assertEquals("Berlin-Mitte", repository.find("a").getTown());
+    }
+
+    @Test
+    public void should_write_recovered_addresses_to_the_repository() {
+        SimulatedAddressRepository empty = new SimulatedAddressRepository(0, 0);
+        AddressService recovered = AddressServices.recovered(
+                new RecoveringJournal(new Address("12043", "Berlin").withRevision(7)), empty, new SimpleMeterRegistry());
+
+        assertEquals("Berlin", recovered.load("a").getTown());
+        awaitTrue(() -> empty.find("a") != null);
+        assertEquals(7, empty.find("a").getRevision());
+    }
+
+    @Test
+    public void should_keep_saving_over_the_same_repository_after_a_restart() {
+        service.save("a", new Address("10115", "Berlin-Mitte"));
+        awaitRepositoryWrites(service);
+        long before = repository.find("a").getRevision();
+
+        AddressService restarted = AddressServices.recovered(null, repository, new SimpleMeterRegistry());
+        long revision = restarted.save("a", new Address("14467", "Potsdam"));
+
+        assertTrue(revision > before);
+        assertEquals("Potsdam", restarted.load("a").getTown());
+        awaitRepositoryWrites(restarted);
+        assertEquals("Potsdam", repository.find("a").getTown());
+        assertEquals("Potsdam", restarted.load("a").getTown());
+    }
+
+    private static void awaitRepositoryWrites(final AddressService target) {
+        awaitTrue(() -> target.getPendingRepositoryWrites() == 0);
+    }
+
+    private static void awaitTrue(final BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private Callable<Address> read(final CountDownLatch start, final String id, final boolean reactive) {
+        return () -> {
+            start.await();
+            return reactive ? service.find(id).block() : service.load(id);
+        };
+    }
+
+    private static final class RecoveringJournal implements AddressJournal {
+
+        private final Address address;
+
+        private RecoveringJournal(final Address address) {
+            this.address = address;
+        }
+
+        @Override
+        public void recover(final BiConsumer<String, Address> consumer,
+                            final Consumer<BiConsumer<String, Address>> storeSource) {
+            consumer.accept("a", address);
+        }
+
+        @Override
+        public void append(final String id, final Address address, final Runnable apply) {
+            apply.run();
+        }
+
+        @Override
+        public CompletableFuture<Void> appendAsync(final String id, final Address address, final Runnable apply) {
+            apply.run();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
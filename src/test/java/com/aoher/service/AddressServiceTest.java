@@ -0,0 +1,103 @@
+package com.aoher.service;
+
+import com.aoher.exception.PreconditionFailedException;
+import com.aoher.model.Address;
+import com.aoher.storage.AddressJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Conditional saves against a journal that takes a while to make records durable, so that a second
+ * save runs while the first is still unapplied.
+ */
+public class AddressServiceTest {
+
+    private static final long DURABLE_AFTER_MILLIS = 50;
+
+    private AddressService service;
+
+    @Before
+    public void setUp() {
+        service = AddressServices.recovered(new SlowJournal(), null, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void should_accept_only_one_of_two_saves_expecting_the_same_revision() throws Exception {
+        long revision = service.save("a", new Address("12043", "Berlin"));
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Long> first = executor.submit(conditionalSave(start, revision, "Hamburg"));
+        Future<Long> second = executor.submit(conditionalSave(start, revision, "Muenchen"));
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<Long> save : Arrays.asList(first, second)) {
+            try {
+                save.get(5, TimeUnit.SECONDS);
+                accepted++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof PreconditionFailedException);
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, accepted);
+    }
+
+    @Test
+    public void should_check_reactive_and_blocking_saves_against_the_latest_revision() {
+        long revision = service.save("b", new Address("12043", "Berlin"));
+        service.store("b", new Address("20095", "Hamburg"), current -> current == revision).block();
+        long stored = service.load("b").getRevision();
+        try {
+            service.save("b", new Address("80331", "Muenchen"), current -> current == revision);
+            fail("accepted a stale revision");
+        } catch (PreconditionFailedException expected) {
+            // stale revision
+        }
+        service.save("b", new Address("50667", "Koeln"), current -> current == stored);
+        assertEquals("Koeln", service.load("b").getTown());
+    }
+
+    private Callable<Long> conditionalSave(final CountDownLatch start, final long revision, final String town) {
+        return () -> {
+            start.await();
+            return service.save("a", new Address("10115", town), current -> current == revision);
+        };
+    }
+
+    private static final class SlowJournal implements AddressJournal {
+
+        @Override
+        public void recover(final BiConsumer<String, Address> consumer,
+                            final Consumer<BiConsumer<String, Address>> storeSource) {
+        }
+
+        @Override
+        public void append(final String id, final Address address, final Runnable apply) {
+            appendAsync(id, address, apply).join();
+        }
+
+        @Override
+        public CompletableFuture<Void> appendAsync(final String id, final Address address, final Runnable apply) {
+            return CompletableFuture.runAsync(apply, CompletableFuture.delayedExecutor(
+                    DURABLE_AFTER_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.aoher.service;
+
+import com.aoher.cache.AddressResponseCache;
+import com.aoher.converter.AddressParamCodecs;
+import com.aoher.metrics.ApiMetrics;
+import com.aoher.storage.AddressJournal;
+import com.aoher.storage.AddressRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Recovered {@link AddressService}s for tests without an application context, with a small response
+ * cache and change feed and without a write queue.
+ */
+final class AddressServices {
+
+    private static final int CAPACITY = 100;
+
+    private static final long READ_TIMEOUT_MILLIS = 1000;
+
+    private AddressServices() {
+    }
+
+    static AddressService inMemory() {
+        return recovered(null, null, new SimpleMeterRegistry());
+    }
+
+    static AddressService recovered(final AddressJournal journal, final AddressRepository repository,
+                                    final MeterRegistry registry) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        AddressService service = new AddressService(
+                new AddressResponseCache(new AddressParamCodecs(objectMapper), new ApiMetrics(registry), CAPACITY),
+                new AddressChangeFeed(objectMapper, CAPACITY, CAPACITY),
+                journal, null, repository, registry, READ_TIMEOUT_MILLIS);
+        service.recover();
+        return service;
+    }
+}
@@ -0,0 +1,132 @@
+package com.aoher.service;
+
+import com.aoher.exception.WriteQueueClosedException;
+import com.aoher.exception.WriteQueueFullException;
+import com.aoher.model.Address;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AddressWriteQueueTest {
+
+    private final List<Map<String, Address>> batches = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch firstBatchTaken = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void should_coalesce_saves_to_the_same_id_while_a_batch_is_written() throws Exception {
+        AddressWriteQueue queue = start(100);
+        queue.offer("a", new Address("12043", "Berlin", 1));
+        assertTrue(firstBatchTaken.await(5, TimeUnit.SECONDS));
+
+        queue.offer("b", new Address("20095", "Hamburg", 2));
+        queue.offer("a", new Address("80331", "Muenchen", 3));
+        queue.offer("b", new Address("50667", "Koeln", 4));
+        CompletableFuture<Void> next = queue.nextBatch();
+        release.countDown();
+        next.get(5, TimeUnit.SECONDS);
+        queue.close();
+
+        assertEquals(2, batches.size());
+        Map<String, Address> coalesced = batches.get(1);
+        assertEquals(2, coalesced.size());
+        assertEquals(3, coalesced.get("a").getRevision());
+        assertEquals("Koeln", coalesced.get("b").getTown());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void should_reject_saves_beyond_capacity_and_after_close() throws Exception {
+        AddressWriteQueue queue = start(2);
+        queue.offer("a", new Address("12043", "Berlin", 1));
+        assertTrue(firstBatchTaken.await(5, TimeUnit.SECONDS));
+        queue.offer("b", new Address("20095", "Hamburg", 2));
+        try {
+            queue.offer("c", new Address("80331", "Muenchen", 3));
+            fail("accepted a save beyond capacity");
+        } catch (WriteQueueFullException expected) {
+            // the batch being written still holds its slot
+        }
+
+        release.countDown();
+        queue.close();
+        assertEquals(2, batches.size());
+        try {
+            queue.offer("c", new Address("80331", "Muenchen", 3));
+            fail("accepted a save after close");
+        } catch (WriteQueueClosedException expected) {
+            // shutting down
+        }
+    }
+
+    @Test
+    public void should_wake_waiters_that_came_in_during_a_write_once_it_is_applied() throws Exception {
+        AddressWriteQueue queue = start(100);
+        queue.offer("a", new Address("12043", "Berlin", 1));
+        assertTrue(firstBatchTaken.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> next = queue.nextBatch();
+        release.countDown();
+        next.get(5, TimeUnit.SECONDS);
+        queue.close();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void should_report_the_revisions_of_a_failed_batch_until_a_later_save_is_applied() throws Exception {
+        AddressWriteQueue queue = new AddressWriteQueue(new SimpleMeterRegistry(), 100, 512);
+        queue.start(batch -> {
+            batches.add(new LinkedHashMap<>(batch));
+            firstBatchTaken.countDown();
+            release.await();
+            if (batch.containsKey("b")) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+        queue.offer("a", new Address("12043", "Berlin", 1));
+        assertTrue(firstBatchTaken.await(5, TimeUnit.SECONDS));
+        queue.offer("a", new Address("20095", "Hamburg", 2));
+        queue.offer("b", new Address("80331", "Muenchen", 3));
+        release.countDown();
+        // the size drops once a batch is done with, failed or not
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(queue.failed("a", 2));
+        assertTrue(queue.failed("b", 3));
+        assertFalse(queue.failed("b", 4));
+
+        CompletableFuture<Void> next = queue.nextBatch();
+        queue.offer("a", new Address("50667", "Koeln", 4));
+        next.get(5, TimeUnit.SECONDS);
+        queue.close();
+        assertFalse(queue.failed("a", 2));
+        assertTrue(queue.failed("b", 3));
+    }
+
+    private AddressWriteQueue start(final int capacity) {
+        AddressWriteQueue queue = new AddressWriteQueue(new SimpleMeterRegistry(), capacity, 512);
+        queue.start(batch -> {
+            batches.add(new LinkedHashMap<>(batch));
+            firstBatchTaken.countDown();
+            release.await();
+        });
+        return queue;
+    }
+}
@@ -0,0 +1,56 @@
+package com.aoher.startup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@ActiveProfiles("fast-startup")
+public class FastStartupProfileTest {
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    public void should_serve_versioned_requests_with_lazy_initialization() throws Exception {
+        HttpResponse<String> hello = send(HttpRequest.newBuilder(uri("/apiurl/V1/hello")).build());
+        assertEquals(200, hello.statusCode());
+
+        HttpResponse<String> save = send(HttpRequest.newBuilder(uri("/apiheader/address/fast-startup"))
+                .header("X-API-Version", "V2")
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("zip=12043&town=Berlin"))
+                .build());
+        assertEquals(202, save.statusCode());
+
+        HttpResponse<String> find = send(HttpRequest.newBuilder(uri("/apiaccept/address/fast-startup"))
+                .header("Accept", "application/vnd.company.app-V1+json")
+                .build());
+        assertEquals(200, find.statusCode());
+        assertThat(find.body(), containsString("12043 Berlin"));
+    }
+
+    private URI uri(final String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private HttpResponse<String> send(final HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
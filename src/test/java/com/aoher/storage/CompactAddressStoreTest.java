@@ -0,0 +1,260 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactAddressStoreTest {
+
+    private final CompactAddressStore store = new CompactAddressStore();
+
+    @Test
+    public void should_round_trip_zips_and_towns_of_any_shape() {
+        store.merge("leading-zero", new Address("01067", "Dresden", 1));
+        store.merge("letters", new Address("SW1A 1AA", "London", 2));
+        store.merge("short", new Address("123", "", 3));
+        store.merge("nulls", new Address(null, null, 4));
+
+        assertAddress("01067", "Dresden", 1, store.get("leading-zero"));
+        assertAddress("SW1A 1AA", "London", 2, store.get("letters"));
+        assertAddress("123", "", 3, store.get("short"));
+        assertAddress(null, null, 4, store.get("nulls"));
+        assertNull(store.get("unknown"));
+    }
+
+    @Test
+    public void should_keep_the_highest_revision_and_share_towns() {
+        assertTrue(store.merge("a", new Address("12043", "Berlin", 5)));
+        assertFalse(store.merge("a", new Address("80331", "Muenchen", 4)));
+        assertTrue(store.merge("b", new Address("10115", "Berlin", 6)));
+
+        assertAddress("12043", "Berlin", 5, store.get("a"));
+        assertEquals(2, store.size());
+        assertTrue(store.get("a").getTown() == store.get("b").getTown());
+
+        Map<String, Address> all = new HashMap<>();
+        store.forEach(all::put);
+        assertEquals(2, all.size());
+        assertEquals("10115", all.get("b").getZip());
+    }
+
+    @Test
+    public void should_scan_zip_ranges_in_order_across_pages_and_moves() {
+        store.merge("c", new Address("12100", "C", 1));
+        store.merge("a", new Address("12000", "A", 2));
+        store.merge("b", new Address("12000", "B", 3));
+        store.merge("letters", new Address("SW1A 1AA", "London", 4));
+        store.merge("outside", new Address("13000", "X", 5));
+        store.merge("d", new Address("99999", "D", 6));
+        store.merge("d", new Address("12050", "D", 7));
+
+        List<String> ids = new ArrayList<>();
+        long position = store.scanZips(12000, 12999, CompactAddressStore.NO_POSITION, 2,
+                (id, address) -> ids.add(id));
+        assertEquals(Arrays.asList("a", "b"), ids);
+        assertEquals(CompactAddressStore.NO_POSITION, store.scanZips(12000, 12999, position, 2,
+                (id, address) -> ids.add(id + "@" + address.getZip())));
+        assertEquals(Arrays.asList("a", "b", "d@12050", "c@12100"), ids);
+
+        ids.clear();
+        store.scanZips(90000, 99999, CompactAddressStore.NO_POSITION, 10, (id, address) -> ids.add(id));
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    public void should_complete_towns_by_folded_prefix_with_the_most_addresses_first() {
+        store.merge("1", new Address("04109", "Leipzig", 1));
+        store.merge("2", new Address("04229", "Leipzig", 2));
+        store.merge("3", new Address("04103", "Leipzig", 3));
+        store.merge("4", new Address("06108", "Le\u00edpzig-S\u00fcd", 4));
+        store.merge("5", new Address("07545", "Lemgo", 5));
+        store.merge("6", new Address("07546", "Lemgo", 6));
+        store.merge("7", new Address("01067", "Dresden", 7));
+
+        TownMatches matches = new TownMatches(TownMatches.MAX_SIZE);
+        store.completeTowns("LE", matches);
+        assertEquals(3, matches.size());
+        assertEquals("Leipzig", matches.getTown(0));
+        assertEquals("04103", matches.getZip(0));
+        assertEquals("Lemgo", matches.getTown(1));
+        assertEquals("Le\u00edpzig-S\u00fcd", matches.getTown(2));
+
+        store.completeTowns("leipzig-sud", matches);
+        assertEquals(1, matches.size());
+
+        store.merge("1", new Address("07547", "Lemgo", 8));
+        store.merge("2", new Address("07548", "Lemgo", 9));
+        store.completeTowns("l\u00c9", matches);
+        assertEquals("Lemgo", matches.getTown(0));
+        assertEquals("07548", matches.getZip(0));
+        assertEquals("Leipzig", matches.getTown(1));
+
+        store.completeTowns("lex", matches);
+        assertEquals(0, matches.size());
+        store.completeTowns("", matches);
+        assertEquals(4, matches.size());
+    }
+
+    @Test
+    public void should_rank_towns_like_a_full_count_after_random_moves() {
+        List<String> generated = new ArrayList<>();
+        for (String first : new String[] {"A", "B", "C"}) {
+            generated.add(first);
+            for (char second = 'a'; second <= 'c'; second++) {
+                generated.add(first + second);
+                for (char third = 'a'; third <= 'c'; third++) {
+                    generated.add(first + second + third);
+                }
+            }
+        }
+        String[] names = generated.toArray(new String[0]);
+        Random random = new Random(7);
+        Map<String, String> townsById = new HashMap<>();
+        List<String> firstUse = new ArrayList<>();
+        for (int revision = 1; revision <= 20_000; revision++) {
+            String id = "id" + random.nextInt(300);
+            String town = names[random.nextInt(random.nextInt(names.length) + 1)];
+            store.merge(id, new Address("12043", town, revision));
+            townsById.put(id, town);
+            if (!firstUse.contains(town)) {
+                firstUse.add(town);
+            }
+
+            String name = names[random.nextInt(names.length)];
+            String prefix = name.substring(0, random.nextInt(name.length() + 1));
+            TownMatches matches = new TownMatches(TownMatches.MAX_SIZE);
+            store.completeTowns(prefix, matches);
+            List<String> actual = new ArrayList<>();
+            for (int i = 0; i < matches.size(); i++) {
+                actual.add(matches.getTown(i));
+            }
+            assertEquals("after revision " + revision + ", prefix " + prefix,
+                    expectedTowns(townsById, firstUse, prefix, names, TownMatches.MAX_SIZE), actual);
+        }
+    }
+
+    @Test
+    public void should_never_tear_reads_while_the_columns_grow() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicBoolean done = new AtomicBoolean();
+        store.merge("hot", new Address(zip(0), "T0", 1));
+        Future<Integer> reader = executor.submit(() -> {
+            int torn = 0;
+            while (!done.get()) {
+                Address address = store.get("hot");
+                if (!address.getTown().equals("T" + Integer.parseInt(address.getZip()))) {
+                    torn++;
+                }
+            }
+            return torn;
+        });
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 1; i < 200_000; i++) {
+                store.merge("hot", new Address(zip(i), "T" + i % 100_000, i + 1));
+                store.merge("id" + i, new Address(zip(i), "T" + i % 100_000, i + 1));
+            }
+            done.set(true);
+        });
+        writer.get(60, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(0), reader.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(200_000, store.size());
+    }
+
+    @Test
+    public void should_keep_indexes_consistent_under_concurrent_writers() throws Exception {
+        String[] names = {"Aa", "Ab", "Ac", "Ba", "Bb"};
+        int writers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        Future<?> reader = executor.submit(() -> {
+            TownMatches matches = new TownMatches(TownMatches.MAX_SIZE);
+            while (!done.get()) {
+                store.completeTowns("a", matches);
+                store.scanZips(0, 99999, CompactAddressStore.NO_POSITION, 50, (id, address) -> { });
+            }
+        });
+        List<Future<?>> writes = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            int first = writer;
+            writes.add(executor.submit(() -> {
+                Random random = new Random(first);
+                for (int revision = 1; revision <= 20_000; revision++) {
+                    store.merge("w" + first + "-" + random.nextInt(200), new Address(zip(random.nextInt(50)),
+                            names[random.nextInt(names.length)], revision));
+                }
+            }));
+        }
+        for (Future<?> write : writes) {
+            write.get(60, TimeUnit.SECONDS);
+        }
+        done.set(true);
+        reader.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        Map<String, String> townsById = new HashMap<>();
+        Map<String, String> zipsById = new HashMap<>();
+        store.forEach((id, address) -> {
+            townsById.put(id, address.getTown());
+            zipsById.put(id, address.getZip());
+        });
+        TownMatches matches = new TownMatches(TownMatches.MAX_SIZE);
+        store.completeTowns("", matches);
+        Map<String, Integer> counts = new HashMap<>();
+        townsById.values().forEach(town -> counts.merge(town, 1, Integer::sum));
+        assertEquals(counts.size(), matches.size());
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(counts.get(matches.getTown(i - 1)) >= counts.get(matches.getTown(i)));
+        }
+
+        Map<String, String> scanned = new HashMap<>();
+        long position = CompactAddressStore.NO_POSITION;
+        do {
+            position = store.scanZips(0, 99999, position, 64, (id, address) -> scanned.put(id, address.getZip()));
+        } while (position != CompactAddressStore.NO_POSITION);
+        assertEquals(zipsById, scanned);
+    }
+
+    private static List<String> expectedTowns(final Map<String, String> townsById, final List<String> firstUse,
+                                              final String prefix, final String[] names, final int limit) {
+        Map<String, Integer> counts = new HashMap<>();
+        townsById.values().forEach(town -> counts.merge(town, 1, Integer::sum));
+        List<String> towns = new ArrayList<>();
+        for (String name : names) {
+            if (name.toLowerCase().startsWith(prefix.toLowerCase()) && counts.containsKey(name)) {
+                towns.add(name);
+            }
+        }
+        // the dictionary numbers towns in order of first use, which breaks ties
+        towns.sort((a, b) -> counts.get(a).equals(counts.get(b))
+                ? firstUse.indexOf(a) - firstUse.indexOf(b) : counts.get(b) - counts.get(a));
+        return towns.subList(0, Math.min(limit, towns.size()));
+    }
+
+    private static String zip(final int i) {
+        return String.format("%05d", i % 100_000);
+    }
+
+    private static void assertAddress(final String zip, final String town, final long revision,
+                                      final Address address) {
+        assertEquals(zip, address.getZip());
+        assertEquals(town, address.getTown());
+        assertEquals(revision, address.getRevision());
+    }
+}
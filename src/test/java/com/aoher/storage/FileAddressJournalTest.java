@@ -0,0 +1,298 @@
+package com.aoher.storage;
+
+import com.aoher.model.Address;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileAddressJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void should_replay_appended_records_after_restart() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+
+        FileAddressJournal journal = open(directory, Long.MAX_VALUE, store);
+        append(journal, store, "a", new Address("12043", "Berlin", 1));
+        append(journal, store, "b", new Address("20095", null, 2));
+        append(journal, store, "a", new Address("80331", "Muenchen", 3));
+        journal.close();
+
+        Map<String, Address> recovered = new ConcurrentHashMap<>();
+        open(directory, Long.MAX_VALUE, recovered).close();
+
+        assertEquals(2, recovered.size());
+        assertEquals("Muenchen", recovered.get("a").getTown());
+        assertEquals(3, recovered.get("a").getRevision());
+        assertEquals(null, recovered.get("b").getTown());
+    }
+
+    @Test
+    public void should_replay_fields_longer_than_a_short_length() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+        String[] towns = {"x".repeat(Short.MAX_VALUE), "y".repeat(Short.MAX_VALUE + 1), "\u00fc".repeat(100_000)};
+
+        FileAddressJournal journal = open(directory, Long.MAX_VALUE, store);
+        for (int i = 0; i < towns.length; i++) {
+            append(journal, store, "long" + i, new Address("12043", towns[i], i + 1));
+        }
+        journal.close();
+
+        Map<String, Address> recovered = new ConcurrentHashMap<>();
+        open(directory, Long.MAX_VALUE, recovered).close();
+
+        for (int i = 0; i < towns.length; i++) {
+            assertEquals(towns[i], recovered.get("long" + i).getTown());
+        }
+    }
+
+    @Test
+    public void should_commit_concurrent_appends_and_compact() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+        FileAddressJournal journal = open(directory, 4096, store);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            int revision = i + 1;
+            executor.execute(() -> append(journal, store, "id" + revision % 500,
+                    new Address(String.valueOf(10000 + revision), "Town" + revision, revision)));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        journal.close();
+
+        File[] snapshots = directory.listFiles((dir, name) -> name.startsWith("snapshot-"));
+        assertTrue(snapshots != null && snapshots.length > 0);
+
+        Map<String, Address> recovered = new ConcurrentHashMap<>();
+        open(directory, Long.MAX_VALUE, recovered).close();
+
+        assertEquals(500, recovered.size());
+        store.forEach((id, address) -> assertEquals(address.getRevision(), recovered.get(id).getRevision()));
+    }
+
+    @Test
+    public void should_drop_torn_tail_and_keep_appending() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+        FileAddressJournal journal = open(directory, Long.MAX_VALUE, store);
+        append(journal, store, "a", new Address("12043", "Berlin", 1));
+        journal.close();
+
+        Path segment = directory.listFiles((dir, name) -> name.startsWith("journal-"))[0].toPath();
+        try (FileChannel channel = FileChannel.open(segment, APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 42, 1, 2, 3}));
+        }
+
+        Map<String, Address> recovered = new ConcurrentHashMap<>();
+        journal = open(directory, Long.MAX_VALUE, recovered);
+        append(journal, recovered, "b", new Address("20095", "Hamburg", 2));
+        journal.close();
+
+        Map<String, Address> reopened = new ConcurrentHashMap<>();
+        open(directory, Long.MAX_VALUE, reopened).close();
+        assertEquals(2, reopened.size());
+        assertEquals("Hamburg", reopened.get("b").getTown());
+    }
+
+    @Test
+    public void should_refuse_to_recover_over_a_corrupt_older_segment() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+        FileAddressJournal journal = open(directory, Long.MAX_VALUE, store);
+        append(journal, store, "a", new Address("12043", "Berlin", 1));
+        journal.close();
+
+        Path segment = directory.listFiles((dir, name) -> name.startsWith("journal-"))[0].toPath();
+        Path newer = segment.resolveSibling(String.format("journal-%016d.log", 1));
+        Files.copy(segment, newer);
+        try (FileChannel channel = FileChannel.open(segment, APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 42, 1, 2, 3}));
+        }
+        long size = Files.size(segment);
+
+        try {
+            open(directory, Long.MAX_VALUE, new ConcurrentHashMap<>());
+            fail("recovered over a gap in an older segment");
+        } catch (UncheckedIOException expected) {
+            // only the newest segment may end in a torn write
+        }
+        assertEquals(size, Files.size(segment));
+    }
+
+    @Test
+    public void should_cut_a_failed_group_off_the_segment() throws Exception {
+        File directory = folder.newFolder();
+        Map<String, Address> store = new ConcurrentHashMap<>();
+        FileAddressJournal journal = open(directory, Long.MAX_VALUE, store);
+        append(journal, store, "a", new Address("12043", "Berlin", 1));
+        FileChannel segment = (FileChannel) ReflectionTestUtils.getField(journal, "segment");
+        ReflectionTestUtils.setField(journal, "segment", new FailingForceChannel(segment));
+        try {
+            append(journal, store, "b", new Address("20095", "Hamburg", 2));
+            fail("reported a group as durable that could not be forced");
+        } catch (UncheckedIOException expected) {
+            // the records were written, but never forced
+        }
+        append(journal, store, "c", new Address("80331", "Muenchen", 3));
+        journal.close();
+
+        Map<String, Address> recovered = new ConcurrentHashMap<>();
+        open(directory, Long.MAX_VALUE, recovered).close();
+        assertEquals(2, recovered.size());
+        assertFalse(recovered.containsKey("b"));
+        assertEquals("Muenchen", recovered.get("c").getTown());
+    }
+
+    private static FileAddressJournal open(final File directory, final long snapshotThreshold,
+                                           final Map<String, Address> store) {
+        FileAddressJournal journal = new FileAddressJournal(directory.getPath(), snapshotThreshold);
+        journal.recover((id, address) -> store.merge(id, address, FileAddressJournalTest::newer), store::forEach);
+        return journal;
+    }
+
+    private static void append(final FileAddressJournal journal, final Map<String, Address> store,
+                               final String id, final Address address) {
+        journal.append(id, address, () -> store.merge(id, address, FileAddressJournalTest::newer));
+    }
+
+    private static Address newer(final Address current, final Address candidate) {
+        return candidate.getRevision() > current.getRevision() ? candidate : current;
+    }
+
+    /**
+     * Writes through to a segment but fails the first force, as a full or failing disk would.
+     */
+    private static final class FailingForceChannel extends FileChannel {
+
+        private final FileChannel channel;
+
+        private boolean failed;
+
+        private FailingForceChannel(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void force(final boolean metaData) throws IOException {
+            if (!failed) {
+                failed = true;
+                throw new IOException("no space left on device");
+            }
+            channel.force(metaData);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(final long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(final long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(final long position, final long count, final WritableByteChannel target)
+                throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(final ReadableByteChannel src, final long position, final long count)
+                throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(final ByteBuffer dst, final long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(final ByteBuffer src, final long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(final MapMode mode, final long position, final long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(final long position, final long size, final boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(final long position, final long size, final boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}